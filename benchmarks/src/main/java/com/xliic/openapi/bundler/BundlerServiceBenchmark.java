@@ -0,0 +1,56 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Bundles the same root many times with a BundlerService, to compare throughput
+ * with different numbers of threads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BundlerServiceBenchmark extends CorpusState {
+    @Param({ "1", "2", "4", "8" })
+    public int threads;
+
+    @Param({ "64" })
+    public int roots;
+
+    private BundlerService service;
+
+    @Setup
+    public void setup() throws Exception {
+        generate(false);
+        BundlerService.Options options = new BundlerService.Options();
+        options.setThreads(threads);
+        service = new BundlerService(parser, serializer, options);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        service.close();
+    }
+
+    @Benchmark
+    public Bundle bundle() throws Exception {
+        List<CompletableFuture<Bundle>> futures = service.bundle(Collections.nCopies(roots, root));
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        return futures.get(0).get();
+    }
+}
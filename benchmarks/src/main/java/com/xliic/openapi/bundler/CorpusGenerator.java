@@ -0,0 +1,128 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+/**
+ * Generates synthetic multi-file OpenAPI documents.
+ *
+ * The root file has one operation per $ref, each returning a schema from one of
+ * the schema files. Several operations refer to the same schema when fan-in is
+ * above one. Schemas are nested objects and, for circular documents, the
+ * innermost property of each schema refers to the next schema, closing a cycle
+ * through all of them.
+ */
+public class CorpusGenerator {
+    public static final String ROOT = "openapi";
+
+    private int files = 10;
+    private int refs = 1000;
+    private int depth = 5;
+    private int fanIn = 10;
+    private boolean circular = false;
+    private boolean json = false;
+
+    public CorpusGenerator files(int files) {
+        this.files = files;
+        return this;
+    }
+
+    public CorpusGenerator refs(int refs) {
+        this.refs = refs;
+        return this;
+    }
+
+    public CorpusGenerator depth(int depth) {
+        this.depth = depth;
+        return this;
+    }
+
+    public CorpusGenerator fanIn(int fanIn) {
+        this.fanIn = fanIn;
+        return this;
+    }
+
+    public CorpusGenerator circular(boolean circular) {
+        this.circular = circular;
+        return this;
+    }
+
+    public CorpusGenerator json(boolean json) {
+        this.json = json;
+        return this;
+    }
+
+    public String getRootFilename() {
+        return filename(ROOT);
+    }
+
+    /**
+     * Returns generated files keyed by their path relative to the workspace root.
+     */
+    public Map<String, String> generate() throws JsonProcessingException {
+        ObjectMapper mapper = json ? new ObjectMapper() : new ObjectMapper(new YAMLFactory());
+        int schemas = Math.max(1, refs / Math.max(1, fanIn));
+        int schemaFiles = Math.max(1, Math.min(files, schemas));
+
+        ObjectNode root = mapper.createObjectNode();
+        root.put("openapi", "3.0.3");
+        root.putObject("info").put("title", "Generated").put("version", "1.0");
+        ObjectNode paths = root.putObject("paths");
+        for (int i = 0; i < refs; i++) {
+            paths.putObject("/operation" + i).putObject("get").putObject("responses").putObject("200")
+                    .put("description", "OK").putObject("content").putObject("application/json").putObject("schema")
+                    .put("$ref", schemaRef(i % schemas, schemaFiles, null));
+        }
+
+        ObjectNode[] components = new ObjectNode[schemaFiles];
+        for (int i = 0; i < schemaFiles; i++) {
+            components[i] = mapper.createObjectNode();
+            components[i].putObject("components").putObject("schemas");
+        }
+
+        for (int i = 0; i < schemas; i++) {
+            int file = i % schemaFiles;
+            ObjectNode schema = ((ObjectNode) components[file].get("components").get("schemas"))
+                    .putObject("Schema" + i);
+            ObjectNode current = schema;
+            for (int level = 0; level < depth; level++) {
+                current.put("type", "object");
+                current.putObject("properties").putObject("id").put("type", "integer");
+                current = ((ObjectNode) current.get("properties")).putObject("level" + level);
+            }
+            if (circular) {
+                current.put("$ref", schemaRef((i + 1) % schemas, schemaFiles, file));
+            } else {
+                current.put("type", "string");
+            }
+        }
+
+        Map<String, String> result = new LinkedHashMap<>();
+        result.put(getRootFilename(), mapper.writeValueAsString(root));
+        for (int i = 0; i < schemaFiles; i++) {
+            result.put("schemas/" + filename("schemas" + i), mapper.writeValueAsString(components[i]));
+        }
+        return result;
+    }
+
+    private String schemaRef(int schema, int schemaFiles, Integer from) {
+        int file = schema % schemaFiles;
+        String name = filename("schemas" + file);
+        String location = from == null ? "schemas/" + name : from == file ? "" : name;
+        return location + "#/components/schemas/Schema" + schema;
+    }
+
+    private String filename(String name) {
+        return name + (json ? ".json" : ".yaml");
+    }
+}
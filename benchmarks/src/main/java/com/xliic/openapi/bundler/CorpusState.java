@@ -0,0 +1,66 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.net.URI;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Generated corpus shared by the benchmarks, with the generator settings as JMH
+ * parameters.
+ */
+@State(Scope.Benchmark)
+public class CorpusState {
+    @Param({ "10" })
+    public int files;
+
+    @Param({ "1000" })
+    public int refs;
+
+    @Param({ "5" })
+    public int depth;
+
+    @Param({ "10" })
+    public int fanIn;
+
+    @Param({ "false" })
+    public boolean circular;
+
+    protected MemoryWorkspace workspace;
+    protected Parser parser;
+    protected Serializer serializer;
+    protected URI root;
+
+    protected void generate(boolean json) throws Exception {
+        CorpusGenerator generator = new CorpusGenerator().files(files).refs(refs).depth(depth).fanIn(fanIn)
+                .circular(circular).json(json);
+        workspace = new MemoryWorkspace(generator.generate());
+        parser = new Parser(workspace);
+        serializer = new Serializer();
+        root = workspace.resolve(generator.getRootFilename());
+    }
+
+    /**
+     * Parses the root file and loads all the files it refers to.
+     */
+    protected Document load() throws Exception {
+        Document document = parser.parse(root);
+        new Bundler(parser, serializer).crawl(document.root, document.root.node, null, new JsonPath(),
+                new JsonPath());
+        return document;
+    }
+
+    protected Bundler crawl(Document document, boolean inPlace) throws Exception {
+        Bundler.Options options = new Bundler.Options();
+        options.setInPlace(inPlace);
+        Bundler bundler = new Bundler(parser, serializer, options);
+        bundler.crawl(document.root, document.root.node, null, new JsonPath(), new JsonPath());
+        return bundler;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Crawls a document whose files are already loaded, so that only the traversal
+ * and reference resolution are measured.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CrawlBenchmark extends CorpusState {
+    private Document document;
+
+    @Setup
+    public void setup() throws Exception {
+        generate(false);
+        document = load();
+    }
+
+    @Benchmark
+    public Inventory crawl() throws Exception {
+        return crawl(document, true).getInventory();
+    }
+}
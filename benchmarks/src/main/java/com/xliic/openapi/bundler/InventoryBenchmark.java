@@ -0,0 +1,54 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+
+import com.xliic.openapi.bundler.Inventory.Entry;
+
+/**
+ * Builds and sorts an inventory from the entries recorded by a crawl.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InventoryBenchmark extends CorpusState {
+    private ArrayList<Reference> references = new ArrayList<>();
+    private ArrayList<Entry> entries = new ArrayList<>();
+
+    @Setup
+    public void setup() throws Exception {
+        generate(false);
+        Document document = load();
+        for (Entry entry : crawl(document, true).getInventory()) {
+            Reference reference = new Reference(entry.part, entry.ref, entry.pointer);
+            reference.resolvedPart = entry.part;
+            reference.resolvedValue = entry.value;
+            reference.resolvedPath = entry.path;
+            reference.indirections = entry.indirections;
+            reference.circular = entry.circular;
+            references.add(reference);
+            entries.add(entry);
+        }
+    }
+
+    @Benchmark
+    public List<Inventory.Target> addAndSort() throws Exception {
+        Inventory inventory = new Inventory();
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            inventory.add(entry.parent, entry.key, entry.pathFromRoot, references.get(i));
+        }
+        return inventory.getTargets();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.NoSuchFileException;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.xliic.common.ContentType;
+import com.xliic.common.Workspace;
+import com.xliic.common.WorkspaceContent;
+
+/**
+ * Workspace holding generated files in memory, so that benchmarks don't measure
+ * disk access.
+ */
+public class MemoryWorkspace implements Workspace {
+    private static final URI ROOT = URI.create("file:/corpus/");
+
+    private final HashMap<URI, WorkspaceContent> files = new HashMap<>();
+
+    public MemoryWorkspace(Map<String, String> files) {
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            String filename = file.getKey();
+            ContentType type = filename.endsWith(".json") ? ContentType.JSON : ContentType.YAML;
+            this.files.put(resolve(filename), new WorkspaceContent(file.getValue(), type));
+        }
+    }
+
+    @Override
+    public WorkspaceContent read(URI uri) throws NoSuchFileException {
+        WorkspaceContent content = files.get(uri);
+        if (content == null) {
+            throw new NoSuchFileException(uri.toString());
+        }
+        return content;
+    }
+
+    @Override
+    public boolean exists(URI uri) {
+        return files.containsKey(uri);
+    }
+
+    @Override
+    public URI relativize(URI uri) {
+        return ROOT.relativize(uri);
+    }
+
+    @Override
+    public URI resolve(String filename) {
+        try {
+            return ROOT.resolve(new URI(null, filename, null));
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParserBenchmark extends CorpusState {
+    @Param({ "json", "yaml" })
+    public String format;
+
+    @Setup
+    public void setup() throws Exception {
+        generate(format.equals("json"));
+    }
+
+    @Benchmark
+    public JsonNode readTree() throws Exception {
+        return parser.readTree(root);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Remaps a crawled document. Remapping in place modifies the document, so that
+ * variant parses and crawls a fresh copy before every invocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RemapBenchmark {
+
+    public static class Copying extends CorpusState {
+        Document document;
+        Bundler bundler;
+
+        @Setup
+        public void setup() throws Exception {
+            generate(false);
+            document = load();
+            bundler = crawl(document, false);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class InPlace extends CorpusState {
+        Document document;
+        Bundler bundler;
+
+        @Setup(Level.Trial)
+        public void generate() throws Exception {
+            generate(false);
+        }
+
+        @Setup(Level.Invocation)
+        public void setup() throws Exception {
+            document = load();
+            bundler = crawl(document, true);
+        }
+    }
+
+    @Benchmark
+    public Mapping copying(Copying state) throws Exception {
+        return state.bundler.remap(state.document);
+    }
+
+    @Benchmark
+    public Mapping inPlace(InPlace state) throws Exception {
+        return state.bundler.remap(state.document);
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Resolves every $ref of the root file, with or without a resolution cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ResolverBenchmark extends CorpusState {
+    @Param({ "true", "false" })
+    public boolean cached;
+
+    private Document document;
+    private ArrayList<JsonNode> nodes = new ArrayList<>();
+    private ArrayList<JsonPointer> pointers = new ArrayList<>();
+
+    @Setup
+    public void setup() throws Exception {
+        generate(false);
+        document = load();
+        collect(document.root.node, new JsonPath());
+    }
+
+    private void collect(JsonNode node, JsonPath path) {
+        if (Resolver.isRef(node)) {
+            nodes.add(node);
+            pointers.add(path.toPointer());
+        } else if (node.isObject()) {
+            Iterator<String> fields = node.fieldNames();
+            while (fields.hasNext()) {
+                String field = fields.next();
+                collect(node.get(field), path.withKey(field));
+            }
+        }
+    }
+
+    @Benchmark
+    public void resolve(Blackhole blackhole) {
+        ResolutionCache cache = cached ? new ResolutionCache() : null;
+        for (int i = 0; i < nodes.size(); i++) {
+            Reference reference = new Reference(document.root, nodes.get(i), pointers.get(i));
+            Resolver.resolveReference(parser, cache, reference);
+            blackhole.consume(reference.resolvedValue);
+        }
+    }
+}
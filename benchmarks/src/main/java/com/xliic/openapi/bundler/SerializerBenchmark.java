@@ -0,0 +1,53 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SerializerBenchmark extends CorpusState {
+    private JsonNode bundled;
+
+    @Setup
+    public void setup() throws Exception {
+        generate(false);
+        Document document = parser.parse(root);
+        Bundler bundler = new Bundler(parser, serializer);
+        bundler.bundle(document);
+        bundled = bundler.getBundled();
+    }
+
+    @Benchmark
+    public String serialize() throws Exception {
+        return serializer.serialize(bundled);
+    }
+
+    @Benchmark
+    public void stream(Blackhole blackhole) throws Exception {
+        serializer.serialize(bundled, new OutputStream() {
+            @Override
+            public void write(int b) {
+                blackhole.consume(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                blackhole.consume(len);
+            }
+        });
+    }
+}
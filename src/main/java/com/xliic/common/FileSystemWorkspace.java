@@ -0,0 +1,133 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.common;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+/**
+ * Workspace reading files from the local file system. Files are returned as
+ * bytes, read into a buffer of their exact size unless memory mapping is
+ * enabled.
+ */
+public class FileSystemWorkspace implements Workspace {
+    private final URI root;
+    private final long mappingThreshold;
+
+    public FileSystemWorkspace(Path root) {
+        this(root, Long.MAX_VALUE);
+    }
+
+    /**
+     * Memory maps files of mappingThreshold bytes or more. Mapped files stay open
+     * until the buffer is garbage collected, which prevents changing or deleting
+     * them on Windows, and truncating them while mapped crashes the JVM. Only
+     * use it for files which aren't changed while bundling.
+     */
+    public FileSystemWorkspace(Path root, long mappingThreshold) {
+        this.root = root.toAbsolutePath().normalize().toUri();
+        this.mappingThreshold = mappingThreshold;
+    }
+
+    @Override
+    public WorkspaceContent read(URI uri) throws IOException, InterruptedException, WorkspaceException {
+        Path path = Paths.get(uri);
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(String.format("File is too large: %s", path));
+            }
+            if (size >= mappingThreshold) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                buffer = ByteBuffer.allocate((int) size);
+                while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                    // keep reading until the buffer is full
+                }
+                // cast for Java 8, where flip() is not overridden in ByteBuffer
+                ((Buffer) buffer).flip();
+            }
+        }
+        return new WorkspaceContent(buffer, StandardCharsets.UTF_8, detect(path, buffer));
+    }
+
+    @Override
+    public boolean exists(URI uri) throws IOException, InterruptedException {
+        return Files.exists(Paths.get(uri));
+    }
+
+    @Override
+    public URI relativize(URI uri) {
+        return root.relativize(uri);
+    }
+
+    @Override
+    public URI resolve(String filename) {
+        try {
+            return root.resolve(new URI(null, filename, null));
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
+
+    static ContentType detect(Path path, ByteBuffer buffer) {
+        Path name = path.getFileName();
+        String filename = name == null ? "" : name.toString().toLowerCase(Locale.ROOT);
+        if (filename.endsWith(".json")) {
+            return ContentType.JSON;
+        } else if (filename.endsWith(".yaml") || filename.endsWith(".yml")) {
+            return ContentType.YAML;
+        }
+        return sniff(buffer.duplicate());
+    }
+
+    /**
+     * Guesses the type of the file from its first line: JSON starts with an object
+     * or an array, YAML with a document marker, a directive, a comment or a key.
+     */
+    static ContentType sniff(ByteBuffer buffer) {
+        // skip UTF-8 BOM and leading whitespace
+        if (buffer.remaining() >= 3 && (buffer.get(buffer.position()) & 0xFF) == 0xEF
+                && (buffer.get(buffer.position() + 1) & 0xFF) == 0xBB
+                && (buffer.get(buffer.position() + 2) & 0xFF) == 0xBF) {
+            ((Buffer) buffer).position(buffer.position() + 3);
+        }
+        while (buffer.hasRemaining() && Character.isWhitespace(buffer.get(buffer.position()))) {
+            buffer.get();
+        }
+        if (!buffer.hasRemaining()) {
+            return null;
+        }
+
+        byte first = buffer.get(buffer.position());
+        if (first == '{' || first == '[') {
+            return ContentType.JSON;
+        } else if (first == '#' || first == '-' || first == '%') {
+            return ContentType.YAML;
+        }
+
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if (b == '\n' || b == '\r') {
+                break;
+            } else if (b == ':' && (!buffer.hasRemaining() || Character.isWhitespace(buffer.get(buffer.position())))) {
+                return ContentType.YAML;
+            }
+        }
+        return null;
+    }
+}
@@ -5,12 +5,135 @@
 
 package com.xliic.common;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Contents of a workspace file, either as text or as bytes. Byte contents are
+ * handed to the parser without decoding them into a String first.
+ */
 public class WorkspaceContent {
+    /**
+     * Text contents, or null for contents created from a byte[], a ByteBuffer or
+     * an InputStream.
+     *
+     * @deprecated use {@link #isText()} and {@link #getText()}, which also decode
+     *             byte contents
+     */
+    @Deprecated
     public final String data;
     public final ContentType type;
+    private final ByteBuffer buffer;
+    private final InputStream stream;
+    private final Charset charset;
+    private String decoded;
 
     public WorkspaceContent(String data, ContentType type) {
         this.data = data;
         this.type = type;
+        this.buffer = null;
+        this.stream = null;
+        this.charset = null;
+    }
+
+    public WorkspaceContent(byte[] data, Charset charset, ContentType type) {
+        this(ByteBuffer.wrap(data), charset, type);
+    }
+
+    public WorkspaceContent(ByteBuffer data, Charset charset, ContentType type) {
+        this.data = null;
+        this.type = type;
+        this.buffer = data.duplicate();
+        this.stream = null;
+        this.charset = charset;
+    }
+
+    /**
+     * The stream is read once, by the parser, and closed afterwards.
+     */
+    public WorkspaceContent(InputStream data, Charset charset, ContentType type) {
+        this.data = null;
+        this.type = type;
+        this.buffer = null;
+        this.stream = data;
+        this.charset = charset;
+    }
+
+    /**
+     * Returns true if the contents were provided as text.
+     */
+    public boolean isText() {
+        return data != null;
+    }
+
+    /**
+     * Returns a view of the byte contents, or null for text or stream contents.
+     */
+    public ByteBuffer getBuffer() {
+        return buffer == null ? null : buffer.duplicate();
+    }
+
+    /**
+     * Returns the stream contents, or null for text or byte contents.
+     */
+    public InputStream getStream() {
+        return stream;
+    }
+
+    /**
+     * Returns the charset of byte or stream contents, UTF-8 unless specified.
+     */
+    public Charset getCharset() {
+        return charset == null ? StandardCharsets.UTF_8 : charset;
+    }
+
+    /**
+     * Returns the size of the contents in characters for text and in bytes for
+     * byte contents, or -1 for stream contents.
+     */
+    public long size() {
+        if (data != null) {
+            return data.length();
+        } else if (buffer != null) {
+            return buffer.remaining();
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the contents as text, decoding them on first use. Stream contents
+     * are consumed by the first call.
+     */
+    public String getText() throws IOException {
+        if (data != null) {
+            return data;
+        }
+        if (decoded == null) {
+            decoded = getCharset().decode(buffered().getBuffer()).toString();
+        }
+        return decoded;
+    }
+
+    /**
+     * Returns content which can be read more than once: stream contents are read
+     * into memory, other contents are returned as is.
+     */
+    public WorkspaceContent buffered() throws IOException {
+        if (stream == null) {
+            return this;
+        }
+        try (InputStream in = stream) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+            return new WorkspaceContent(out.toByteArray(), charset, type);
+        }
     }
 }
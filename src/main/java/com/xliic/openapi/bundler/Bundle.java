@@ -0,0 +1,29 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.net.URI;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Result of bundling a root document: the bundled document and the mapping of
+ * its external parts back to their original locations.
+ */
+public class Bundle {
+    public final URI root;
+    public final JsonNode node;
+    public final Mapping mapping;
+
+    @SuppressFBWarnings("EI_EXPOSE_REP2")
+    public Bundle(URI root, JsonNode node, Mapping mapping) {
+        this.root = root;
+        this.node = node;
+        this.mapping = mapping;
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.xliic.common.Workspace;
+import com.xliic.common.WorkspaceContent;
+import com.xliic.common.WorkspaceException;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Bundles stored on disk, one file per root document, along with the content
+ * hashes of the files they were bundled from. A stored bundle is returned as
+ * long as none of these files changed, which costs reading and hashing them
+ * instead of parsing, crawling and remapping.
+ *
+ * The stored bundles depend on the options they were made with, use a separate
+ * directory for each set of options.
+ */
+public class BundleCache {
+    private static final int VERSION = 2;
+
+    private final Path directory;
+    private final Parser.Options parserOptions;
+    private final Bundler.Options bundlerOptions;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public BundleCache(Path directory) {
+        this(directory, new Parser.Options(), new Bundler.Options());
+    }
+
+    @SuppressFBWarnings("EI_EXPOSE_REP2")
+    public BundleCache(Path directory, Parser.Options parserOptions, Bundler.Options bundlerOptions) {
+        this.directory = directory;
+        this.parserOptions = parserOptions;
+        this.bundlerOptions = bundlerOptions;
+    }
+
+    /**
+     * Returns the stored bundle of the root document if none of its files changed,
+     * otherwise bundles the document and stores the result.
+     */
+    public Bundle bundle(Workspace workspace, URI root) throws JsonProcessingException, IOException,
+            URISyntaxException, InterruptedException, WorkspaceException, BundlingException {
+        Bundle bundle = get(workspace, root);
+        if (bundle != null) {
+            return bundle;
+        }
+
+        HashingWorkspace hashing = new HashingWorkspace(workspace);
+        Parser parser = new Parser(hashing, parserOptions);
+        Document document = parser.parse(root);
+        Bundler bundler = new Bundler(parser, new Serializer(), bundlerOptions);
+        Mapping mapping = bundler.bundle(document);
+        bundle = new Bundle(root, bundler.getBundled(), mapping);
+        put(bundle, document, hashing.hashes);
+        return bundle;
+    }
+
+    /**
+     * Returns the stored bundle of the root document, or null if there is none or
+     * if any of its files changed.
+     */
+    public Bundle get(Workspace workspace, URI root) throws IOException, InterruptedException, WorkspaceException {
+        Path path = getPath(root);
+        try (InputStream in = Files.newInputStream(path); JsonParser parser = mapper.createParser(in)) {
+            Bundle bundle = read(workspace, root, parser);
+            if (bundle != null) {
+                hits.incrementAndGet();
+                return bundle;
+            }
+        } catch (NoSuchFileException e) {
+            // not stored
+        } catch (JsonProcessingException | URISyntaxException e) {
+            // written by another version, or corrupted
+        } catch (IOException e) {
+            // unreadable, bundle the document again
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void invalidate(URI root) throws IOException {
+        Files.deleteIfExists(getPath(root));
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private Bundle read(Workspace workspace, URI root, JsonParser parser)
+            throws IOException, URISyntaxException, InterruptedException, WorkspaceException {
+        // the hashes come first, so that the bundle is only read if they match
+        if (parser.nextToken() != JsonToken.START_OBJECT || !"version".equals(parser.nextFieldName())
+                || parser.nextIntValue(-1) != VERSION || !"root".equals(parser.nextFieldName())
+                || !root.toString().equals(parser.nextTextValue()) || !"files".equals(parser.nextFieldName())
+                || parser.nextToken() != JsonToken.START_OBJECT) {
+            return null;
+        }
+
+        String file;
+        while ((file = parser.nextFieldName()) != null) {
+            String hash = parser.nextTextValue();
+            if (hash == null || !hash.equals(hash(workspace, file))) {
+                return null;
+            }
+        }
+
+        JsonNode node = null;
+        Mapping mapping = null;
+        String field;
+        while ((field = parser.nextFieldName()) != null) {
+            parser.nextToken();
+            if (field.equals("bundle")) {
+                node = mapper.readTree(parser);
+            } else if (field.equals("mapping")) {
+                mapping = readMapping(mapper.readTree(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return node == null || mapping == null ? null : new Bundle(root, node, mapping);
+    }
+
+    private String hash(Workspace workspace, String file) throws InterruptedException, WorkspaceException {
+        try {
+            return PartCache.fingerprint(workspace.read(URI.create(file)).buffered());
+        } catch (IOException | IllegalArgumentException e) {
+            // deleted, or not readable anymore
+            return null;
+        }
+    }
+
+    private void put(Bundle bundle, Document document, Map<URI, String> hashes) {
+        ObjectNode entry = mapper.createObjectNode();
+        entry.put("version", VERSION);
+        entry.put("root", bundle.root.toString());
+        ObjectNode files = entry.putObject("files");
+        for (URI location : document.parts.keySet()) {
+            String hash = hashes.get(location);
+            if (hash == null) {
+                // not read through the workspace, can't tell if it changes
+                return;
+            }
+            files.put(location.toString(), hash);
+        }
+        entry.set("bundle", bundle.node);
+        ObjectNode mapping = writeMapping(bundle.mapping);
+        // duplicates merged by the deduplicator, only in the reverse index
+        ArrayNode moved = mapping.putArray("moved");
+        for (Map.Entry<JsonPath, ArrayList<Mapping.Mapped>> target : bundle.mapping.getMoved().entrySet()) {
+            for (Mapping.Mapped mapped : target.getValue()) {
+                ObjectNode node = moved.addObject();
+                node.put("to", target.getKey().toPointer().getValue());
+                node.put("path", mapped.path.toPointer().getValue());
+                node.put("uri", mapped.location.uri.toString());
+                node.put("pointer", mapped.location.pointer);
+            }
+        }
+        entry.set("mapping", mapping);
+
+        try {
+            // write to a temporary file first, so that readers never see partial entries
+            Files.createDirectories(directory);
+            Path path = getPath(bundle.root);
+            Path temp = Files.createTempFile(directory, "bundle", ".tmp");
+            try {
+                mapper.writeValue(temp.toFile(), entry);
+                try {
+                    Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            // the cache is an optimization, failing to store a bundle is not an error
+        }
+    }
+
+    private ObjectNode writeMapping(Mapping mapping) {
+        ObjectNode node = mapper.createObjectNode();
+        if (mapping.value != null) {
+            node.put("uri", mapping.value.uri.toString());
+            node.put("pointer", mapping.value.pointer);
+        }
+        if (!mapping.children.isEmpty()) {
+            ObjectNode children = node.putObject("children");
+            for (Map.Entry<String, Mapping> child : mapping.children.entrySet()) {
+                children.set(child.getKey(), writeMapping(child.getValue()));
+            }
+        }
+        return node;
+    }
+
+    private Mapping readMapping(JsonNode node) throws URISyntaxException {
+        Mapping mapping = new Mapping();
+        readMapping(node, new JsonPath(), mapping);
+        for (JsonNode moved : node.path("moved")) {
+            mapping.insertMoved(new JsonPointer(moved.get("to").asText()).getJsonPath(),
+                    new JsonPointer(moved.get("path").asText()).getJsonPath(),
+                    new Mapping.Location(new URI(moved.get("uri").asText()), moved.get("pointer").asText()));
+        }
+        return mapping;
+    }
+
+    private void readMapping(JsonNode node, JsonPath path, Mapping mapping) throws URISyntaxException {
+        // inserted one by one, so that the reverse index is built as well
+        if (node.has("uri")) {
+            mapping.insert(path, new Mapping.Location(new URI(node.get("uri").asText()), node.get("pointer").asText()));
+        }
+        JsonNode children = node.get("children");
+        if (children != null) {
+            Iterator<Map.Entry<String, JsonNode>> fields = children.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> child = fields.next();
+                readMapping(child.getValue(), path.withKey(child.getKey()), mapping);
+            }
+        }
+    }
+
+    private Path getPath(URI root) {
+        return directory.resolve(PartCache.fingerprint(new WorkspaceContent(root.toString(), null)) + ".json");
+    }
+
+    /**
+     * Workspace recording hashes of the files read through it.
+     */
+    private static class HashingWorkspace implements Workspace {
+        private final Workspace workspace;
+        private final ConcurrentHashMap<URI, String> hashes = new ConcurrentHashMap<>();
+
+        HashingWorkspace(Workspace workspace) {
+            this.workspace = workspace;
+        }
+
+        @Override
+        public WorkspaceContent read(URI uri) throws IOException, InterruptedException, WorkspaceException {
+            WorkspaceContent content = workspace.read(uri).buffered();
+            hashes.put(uri, PartCache.fingerprint(content));
+            return content;
+        }
+
+        @Override
+        public boolean exists(URI uri) throws IOException, InterruptedException {
+            return workspace.exists(uri);
+        }
+
+        @Override
+        public URI resolve(String filename) {
+            return workspace.resolve(filename);
+        }
+
+        @Override
+        public URI relativize(URI uri) {
+            return workspace.relativize(uri);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Applies changes of external files to a bundled document without crawling and
+ * remapping it again, when the changes leave the crawl as it was: the $refs of
+ * the changed files, and the discriminators looked at by the tree shaker, are
+ * the same and in the same order, and the values referred to in the files are
+ * still there. The values which came from the changed files are then found
+ * through the mapping and replaced in a copy of the bundled document, keeping
+ * what the bundler put in place of the $refs inside of them.
+ */
+class BundlePatcher {
+    // containers copied by the patcher, which are safe to modify
+    private final Set<JsonNode> created = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final ArrayList<Replacement> replacements = new ArrayList<>();
+
+    /**
+     * Returns the bundled document with the new contents of the parts, or null if
+     * they can't be applied without bundling the document again. The bundle
+     * itself is left untouched, its mapping applies to the result as well.
+     */
+    static JsonNode patch(Bundle bundle, Inventory inventory, Map<Document.Part, JsonNode> changed)
+            throws UnsupportedEncodingException {
+        BundlePatcher patcher = new BundlePatcher();
+        for (Map.Entry<Document.Part, JsonNode> part : changed.entrySet()) {
+            if (!patcher.collect(bundle.mapping, inventory, part.getKey(), part.getValue())) {
+                return null;
+            }
+        }
+
+        // values inlined in other values are replaced first, so that the outer
+        // values pick them up
+        patcher.replacements.sort((a, b) -> Integer.compare(b.bundled.size(), a.bundled.size()));
+        JsonNode result = bundle.node;
+        for (Replacement replacement : patcher.replacements) {
+            result = patcher.replace(result, replacement);
+            if (result == null) {
+                return null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the values of the bundled document coming from the part, returns false
+     * if the new contents of the part would change the crawl.
+     */
+    private boolean collect(Mapping mapping, Inventory inventory, Document.Part part, JsonNode node)
+            throws UnsupportedEncodingException {
+        ArrayList<Marker> markers = findMarkers(node);
+        if (!markers.equals(findMarkers(part.node))) {
+            return false;
+        }
+
+        for (Inventory.Target target : inventory.getTargets(part.location)) {
+            for (Inventory.Entry entry : target.entries) {
+                // merged with the siblings of the $ref when bundled
+                if (entry.extended) {
+                    return false;
+                }
+            }
+            JsonPath path = target.pointer.getJsonPath();
+            if (find(part.node, path) != null && find(node, path) == null) {
+                return false;
+            }
+        }
+
+        PathTrie<JsonPath> refs = new PathTrie<>();
+        for (Marker marker : markers) {
+            if (marker.ref) {
+                refs.put(marker.path, marker.path);
+            }
+        }
+        URI filename = part.getFilename();
+        for (String pointer : mapping.findBundled(filename, "")) {
+            Mapping.Location location = mapping.find(pointer);
+            if (location == null || !location.uri.equals(filename)) {
+                return false;
+            }
+            replacements.add(new Replacement(new JsonPointer(pointer).getJsonPath(),
+                    new JsonPointer(location.pointer).getJsonPath(), node, refs));
+        }
+        return true;
+    }
+
+    private JsonNode replace(JsonNode root, Replacement replacement) {
+        JsonNode current = find(root, replacement.bundled);
+        JsonNode value = find(replacement.node, replacement.source);
+        if (current == null || value == null || replacement.refs.get(replacement.source) != null) {
+            return null;
+        }
+
+        for (JsonPath ref : replacement.refs.findBelow(replacement.source)) {
+            List<String> keys = ref.subList(replacement.source.size(), ref.size());
+            JsonNode bundled = find(current, keys);
+            if (bundled == null) {
+                return null;
+            }
+            value = set(value, keys, bundled);
+        }
+        return set(root, replacement.bundled, value);
+    }
+
+    /**
+     * Returns the $refs and the discriminators of the document, in the order they
+     * are met walking it.
+     */
+    private static ArrayList<Marker> findMarkers(JsonNode root) {
+        ArrayList<Marker> markers = new ArrayList<>();
+        ArrayDeque<JsonNode> nodes = new ArrayDeque<>();
+        ArrayDeque<JsonPath> paths = new ArrayDeque<>();
+        nodes.push(root);
+        paths.push(new JsonPath());
+        while (!nodes.isEmpty()) {
+            JsonNode node = nodes.pop();
+            JsonPath path = paths.pop();
+            if (Resolver.isRef(node)) {
+                // the crawl doesn't look inside $refs
+                markers.add(new Marker(path, node, true));
+            } else if (node.isObject()) {
+                JsonNode discriminator = node.get("discriminator");
+                if (discriminator != null) {
+                    markers.add(new Marker(path.withKey("discriminator"), discriminator, false));
+                }
+                Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    if (field.getValue().isContainerNode()) {
+                        nodes.push(field.getValue());
+                        paths.push(path.withKey(field.getKey()));
+                    }
+                }
+            } else if (node.isArray()) {
+                for (int i = 0; i < node.size(); i++) {
+                    if (node.get(i).isContainerNode()) {
+                        nodes.push(node.get(i));
+                        paths.push(path.withKey(JsonPath.index(i)));
+                    }
+                }
+            }
+        }
+        return markers;
+    }
+
+    private static JsonNode find(JsonNode node, List<String> path) {
+        JsonNode current = node;
+        for (String key : path) {
+            if (current.isArray() && !isIndex(key)) {
+                return null;
+            }
+            current = Util.get(current, key);
+            if (current == null) {
+                return null;
+            }
+        }
+        return current;
+    }
+
+    private static boolean isIndex(String key) {
+        if (key.isEmpty() || key.length() > 9) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (!Character.isDigit(key.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the node with the value set at the path, copying the containers on
+     * the way unless they were created by the patcher.
+     */
+    private JsonNode set(JsonNode node, List<String> path, JsonNode value) {
+        if (path.isEmpty()) {
+            return value;
+        }
+        JsonNode result = own(node);
+        JsonNode current = result;
+        for (String key : path.subList(0, path.size() - 1)) {
+            JsonNode child = own(Util.get(current, key));
+            Util.set(current, key, child);
+            current = child;
+        }
+        Util.set(current, path.get(path.size() - 1), value);
+        return result;
+    }
+
+    private JsonNode own(JsonNode node) {
+        if (created.contains(node)) {
+            return node;
+        }
+        JsonNode copy;
+        if (node.isObject()) {
+            copy = ((ObjectNode) node).objectNode();
+            ((ObjectNode) copy).setAll((ObjectNode) node);
+        } else {
+            copy = ((ArrayNode) node).arrayNode();
+            ((ArrayNode) copy).addAll((ArrayNode) node);
+        }
+        created.add(copy);
+        return copy;
+    }
+
+    private static final class Replacement {
+        // path of the value in the bundled document
+        final JsonPath bundled;
+        // and in the changed part
+        final JsonPath source;
+        final JsonNode node;
+        final PathTrie<JsonPath> refs;
+
+        Replacement(JsonPath bundled, JsonPath source, JsonNode node, PathTrie<JsonPath> refs) {
+            this.bundled = bundled;
+            this.source = source;
+            this.node = node;
+            this.refs = refs;
+        }
+    }
+
+    private static final class Marker {
+        final JsonPath path;
+        final JsonNode node;
+        final boolean ref;
+
+        Marker(JsonPath path, JsonNode node, boolean ref) {
+            this.path = path;
+            this.node = node;
+            this.ref = ref;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof Marker) {
+                Marker other = (Marker) o;
+                return ref == other.ref && path.equals(other.path) && node.equals(other.node);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * path.hashCode() + node.hashCode();
+        }
+    }
+}
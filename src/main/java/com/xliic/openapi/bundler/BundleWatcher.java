@@ -0,0 +1,202 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Watches the directories containing the files of a document and bundles it
+ * again when some of them change. Bursts of changes, as made by editors saving
+ * a file, are debounced into a single update of the IncrementalBundler.
+ *
+ * Only files with file: URIs are watched. The IncrementalBundler must not be
+ * used by anything else once the watcher is started.
+ */
+public class BundleWatcher implements AutoCloseable {
+    private final IncrementalBundler bundler;
+    private final Handler handler;
+    private final Options options;
+    private WatchService watchService;
+    private final HashMap<Path, WatchKey> directories = new HashMap<>();
+    private Thread thread;
+
+    public interface Handler {
+        void bundled(Bundle bundle);
+
+        default void failed(Exception e) {
+        }
+    }
+
+    public static class Options {
+        private long debounceMillis;
+
+        public Options() {
+            this.debounceMillis = 50;
+        }
+
+        public long getDebounceMillis() {
+            return debounceMillis;
+        }
+
+        /**
+         * Sets how long to wait for more changes after a change, before bundling.
+         */
+        public void setDebounceMillis(long debounceMillis) {
+            this.debounceMillis = debounceMillis;
+        }
+    }
+
+    public BundleWatcher(IncrementalBundler bundler, Handler handler) {
+        this(bundler, handler, new Options());
+    }
+
+    @SuppressFBWarnings("EI_EXPOSE_REP2")
+    public BundleWatcher(IncrementalBundler bundler, Handler handler, Options options) {
+        this.bundler = bundler;
+        this.handler = handler;
+        this.options = options;
+    }
+
+    /**
+     * Bundles the document, reporting the result to the handler, and starts
+     * watching its files.
+     */
+    public synchronized void start() throws IOException {
+        if (watchService != null) {
+            throw new IllegalStateException("Watcher is already started");
+        }
+        WatchService service = FileSystems.getDefault().newWatchService();
+        watchService = service;
+        bundle(service, null);
+        thread = new Thread(() -> run(service), "openapi-bundler-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run(WatchService service) {
+        try {
+            while (true) {
+                HashSet<Path> changed = new HashSet<>();
+                boolean overflow = collect(service.take(), changed);
+                WatchKey key;
+                while ((key = service.poll(options.getDebounceMillis(), TimeUnit.MILLISECONDS)) != null) {
+                    overflow = collect(key, changed) || overflow;
+                }
+                bundle(service, overflow ? null : changed);
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // closed
+        }
+    }
+
+    private boolean collect(WatchKey key, HashSet<Path> changed) {
+        boolean overflow = false;
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+            } else {
+                changed.add(directory.resolve((Path) event.context()));
+            }
+        }
+        key.reset();
+        return overflow;
+    }
+
+    /**
+     * Bundles the document again if any of its files are among the changed ones,
+     * or unconditionally if changed is null.
+     */
+    private void bundle(WatchService service, HashSet<Path> changed) {
+        HashMap<Path, URI> files = getFiles();
+        HashSet<URI> uris = new HashSet<>();
+        for (HashMap.Entry<Path, URI> file : files.entrySet()) {
+            if (changed == null || changed.contains(file.getKey())) {
+                uris.add(file.getValue());
+            }
+        }
+
+        if (changed == null || !uris.isEmpty()) {
+            try {
+                handler.bundled(bundler.update(uris));
+            } catch (Exception e) {
+                try {
+                    handler.failed(e);
+                } catch (RuntimeException ignored) {
+                    // keep watching, a failing handler must not stop the thread
+                }
+            }
+            // the document may refer to new files
+            register(service, getFiles());
+        }
+    }
+
+    private HashMap<Path, URI> getFiles() {
+        HashMap<Path, URI> files = new HashMap<>();
+        for (URI uri : bundler.getFiles()) {
+            if ("file".equals(uri.getScheme())) {
+                files.put(Paths.get(uri).toAbsolutePath().normalize(), uri);
+            }
+        }
+        return files;
+    }
+
+    private void register(WatchService service, HashMap<Path, URI> files) {
+        for (Path file : files.keySet()) {
+            Path directory = file.getParent();
+            if (directory != null && !directories.containsKey(directory)) {
+                try {
+                    directories.put(directory, directory.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE));
+                } catch (IOException e) {
+                    // directory of a missing file, registered once it refers to an existing one
+                } catch (ClosedWatchServiceException e) {
+                    // closed by the handler
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops watching, waiting for a bundle in progress to finish unless called by
+     * the handler. If the calling thread is interrupted, stops waiting and keeps
+     * the interrupt status set.
+     */
+    @Override
+    public void close() throws IOException {
+        Thread watching;
+        synchronized (this) {
+            if (watchService == null) {
+                return;
+            }
+            watchService.close();
+            watching = thread;
+        }
+        // joined without holding the lock, the handler may be closing as well
+        if (watching != null && watching != Thread.currentThread()) {
+            try {
+                watching.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
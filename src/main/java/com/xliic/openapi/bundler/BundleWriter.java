@@ -0,0 +1,261 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Applies the changes made by Bundler.remap to produce the bundled document.
+ */
+abstract class BundleWriter {
+
+    abstract void setRef(JsonNode ref, JsonPointer pointer);
+
+    abstract void set(JsonNode parent, String key, JsonNode value);
+
+    abstract void add(JsonPath path, JsonNode value);
+
+    abstract JsonNode build();
+
+    /**
+     * Modifies the parsed parts, the bundled document replaces the root part.
+     */
+    static class InPlace extends BundleWriter {
+        private final Serializer serializer;
+        private final JsonNode root;
+
+        InPlace(Serializer serializer, JsonNode root) {
+            this.serializer = serializer;
+            this.root = root;
+        }
+
+        @Override
+        void setRef(JsonNode ref, JsonPointer pointer) {
+            Util.setRef(ref, pointer);
+        }
+
+        @Override
+        void set(JsonNode parent, String key, JsonNode value) {
+            Util.set(parent, key, value);
+        }
+
+        @Override
+        void add(JsonPath path, JsonNode value) {
+            Util.set(serializer, root, path, value);
+        }
+
+        @Override
+        JsonNode build() {
+            return root;
+        }
+    }
+
+    /**
+     * Records the changes and builds a new document when done, leaving the parsed
+     * parts untouched. Subtrees without changes are shared with the parts, only
+     * the nodes on the paths leading to changes are copied.
+     */
+    static class Copying extends BundleWriter {
+        private final Serializer serializer;
+        private final JsonNode root;
+        private final IdentityHashMap<JsonNode, String> refs = new IdentityHashMap<>();
+        private final IdentityHashMap<JsonNode, HashMap<String, JsonNode>> replacements = new IdentityHashMap<>();
+        private final ArrayList<JsonPath> additionPaths = new ArrayList<>();
+        private final ArrayList<JsonNode> additionValues = new ArrayList<>();
+        // rewritten nodes, keyed by the original node
+        private final IdentityHashMap<JsonNode, JsonNode> rewritten = new IdentityHashMap<>();
+        // nodes created by the writer, which are safe to modify
+        private final Set<JsonNode> created = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        Copying(Serializer serializer, JsonNode root) {
+            this.serializer = serializer;
+            this.root = root;
+        }
+
+        @Override
+        void setRef(JsonNode ref, JsonPointer pointer) {
+            if (!ref.isObject()) {
+                throw new IllegalArgumentException("Can't set $ref, argument is not an object");
+            }
+            refs.put(ref, pointer.getURI().toString());
+        }
+
+        @Override
+        void set(JsonNode parent, String key, JsonNode value) {
+            if (!parent.isContainerNode()) {
+                throw new IllegalArgumentException("Can't set, argument is not a container");
+            }
+            HashMap<String, JsonNode> values = replacements.get(parent);
+            if (values == null) {
+                values = new HashMap<>();
+                replacements.put(parent, values);
+            }
+            values.put(key, value);
+        }
+
+        @Override
+        void add(JsonPath path, JsonNode value) {
+            additionPaths.add(path);
+            additionValues.add(value);
+        }
+
+        @Override
+        JsonNode build() {
+            JsonNode result = rewrite(root);
+            for (int i = 0; i < additionPaths.size(); i++) {
+                result = insert(result, additionPaths.get(i), rewrite(additionValues.get(i)));
+            }
+            return result;
+        }
+
+        private JsonNode insert(JsonNode root, JsonPath path, JsonNode value) {
+            JsonNode result = own(root);
+            JsonNode current = result;
+            for (String key : path.subList(0, path.size() - 1)) {
+                JsonNode child = Util.get(current, key);
+                if (child == null) {
+                    child = serializer.createObjectNode();
+                    created.add(child);
+                } else {
+                    child = own(child);
+                }
+                Util.set(current, key, child);
+                current = child;
+            }
+
+            String key = path.get(path.size() - 1);
+            if (current.has(key)) {
+                throw new IllegalArgumentException(
+                        "Attempting to override existing value at: " + String.join("/", path));
+            }
+            Util.set(current, key, value);
+            return result;
+        }
+
+        private JsonNode own(JsonNode node) {
+            if (created.contains(node)) {
+                return node;
+            }
+            JsonNode copy = copy(node);
+            created.add(copy);
+            return copy;
+        }
+
+        private JsonNode rewrite(JsonNode node) {
+            if (!node.isContainerNode()) {
+                return node;
+            } else if (rewritten.containsKey(node)) {
+                return rewritten.get(node);
+            }
+
+            ArrayDeque<Frame> stack = new ArrayDeque<>();
+            stack.push(new Frame(node));
+            JsonNode result = null;
+            while (!stack.isEmpty()) {
+                Frame frame = stack.peek();
+                if (frame.next()) {
+                    JsonNode child = frame.child;
+                    if (child.isContainerNode() && !rewritten.containsKey(child)) {
+                        stack.push(new Frame(child));
+                    } else {
+                        frame.accept(child.isContainerNode() ? rewritten.get(child) : child);
+                    }
+                } else {
+                    stack.pop();
+                    JsonNode done = frame.finish();
+                    rewritten.put(frame.node, done);
+                    if (stack.isEmpty()) {
+                        result = done;
+                    } else {
+                        stack.peek().accept(done);
+                    }
+                }
+            }
+            return result;
+        }
+
+        private JsonNode copy(JsonNode node) {
+            if (node.isObject()) {
+                ObjectNode copy = ((ObjectNode) node).objectNode();
+                copy.setAll((ObjectNode) node);
+                return copy;
+            }
+            ArrayNode copy = ((ArrayNode) node).arrayNode();
+            copy.addAll((ArrayNode) node);
+            return copy;
+        }
+
+        /**
+         * Container node being rewritten, holds the copy of the node once one of its
+         * children has changed.
+         */
+        private class Frame {
+            final JsonNode node;
+            final Iterator<String> fields;
+            final HashMap<String, JsonNode> replaced;
+            int index = -1;
+            String key;
+            JsonNode child;
+            JsonNode copy;
+
+            Frame(JsonNode node) {
+                this.node = node;
+                this.fields = node.isObject() ? node.fieldNames() : null;
+                this.replaced = replacements.get(node);
+            }
+
+            boolean next() {
+                if (fields != null && fields.hasNext()) {
+                    key = fields.next();
+                } else if (fields == null && index + 1 < node.size()) {
+                    index++;
+                    key = replaced == null ? null : JsonPath.index(index);
+                } else {
+                    return false;
+                }
+                child = replaced != null && replaced.containsKey(key) ? replaced.get(key)
+                        : fields != null ? node.get(key) : node.get(index);
+                return true;
+            }
+
+            void accept(JsonNode value) {
+                JsonNode original = fields != null ? node.get(key) : node.get(index);
+                if (value != original) {
+                    if (copy == null) {
+                        copy = copy(node);
+                        created.add(copy);
+                    }
+                    if (fields != null) {
+                        ((ObjectNode) copy).set(key, value);
+                    } else {
+                        ((ArrayNode) copy).set(index, value);
+                    }
+                }
+            }
+
+            JsonNode finish() {
+                if (refs.containsKey(node)) {
+                    if (copy == null) {
+                        copy = copy(node);
+                        created.add(copy);
+                    }
+                    ((ObjectNode) copy).put("$ref", refs.get(node));
+                }
+                return copy == null ? node : copy;
+            }
+        }
+    }
+}
@@ -10,11 +10,16 @@ import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -25,132 +30,351 @@ public class Bundler {
 
     private Inventory inventory = new Inventory();
     private List<ReferenceResolutionFailure> failures = new ArrayList<ReferenceResolutionFailure>();
+    private ResolutionCache cache;
+    private RefGraph graph = new RefGraph();
+    private ReferenceGraph referenceGraph;
+    private int referenceGraphEdges;
+    private int refs = 0;
+    private JsonNode bundled;
+    // components added when remapping external references
+    private ArrayList<JsonPath> components = new ArrayList<>();
     private Serializer serializer;
     private Parser parser;
+    private Options options;
+
+    public static class Options {
+        private Executor prefetchExecutor;
+        private boolean inPlace;
+        private boolean treeShaking;
+        private boolean deduplication;
+
+        public Options() {
+            // Files are loaded one by one during the crawl unless an executor is set
+            this.prefetchExecutor = null;
+            this.inPlace = true;
+            this.treeShaking = false;
+            this.deduplication = false;
+        }
+
+        public boolean isInPlace() {
+            return inPlace;
+        }
+
+        /**
+         * When set to false, the parsed document is left untouched and the bundled
+         * document is built separately, see Bundler.getBundled(). The bundled
+         * document shares unchanged subtrees with the parsed document. Partial
+         * bundles are never done in place.
+         */
+        public void setInPlace(boolean inPlace) {
+            this.inPlace = inPlace;
+        }
+
+        public boolean isTreeShaking() {
+            return treeShaking;
+        }
+
+        /**
+         * When set to true, components which are not referenced from paths or other
+         * parts of the bundled document are removed from it, along with their
+         * mappings. Security schemes are always kept.
+         */
+        public void setTreeShaking(boolean treeShaking) {
+            this.treeShaking = treeShaking;
+        }
+
+        public boolean isDeduplication() {
+            return deduplication;
+        }
+
+        /**
+         * When set to true, identical components added to the bundled document from
+         * external files are merged into one, and references to them updated.
+         */
+        public void setDeduplication(boolean deduplication) {
+            this.deduplication = deduplication;
+        }
+
+        public Executor getPrefetchExecutor() {
+            return prefetchExecutor;
+        }
+
+        /**
+         * Sets the executor used to read and parse external files ahead of the
+         * crawl. The Workspace used by the Parser must support concurrent reads.
+         */
+        public void setPrefetchExecutor(Executor prefetchExecutor) {
+            this.prefetchExecutor = prefetchExecutor;
+        }
+    }
 
     public Bundler(Parser parser, Serializer serializer) throws JsonProcessingException, IOException {
+        this(parser, serializer, new Options());
+    }
+
+    public Bundler(Parser parser, Serializer serializer, Options options) throws JsonProcessingException, IOException {
+        this(parser, serializer, options, new ResolutionCache());
+    }
+
+    /**
+     * Creates a Bundler reusing resolutions from a previous run, the cache must
+     * have been invalidated for files changed since then.
+     */
+    @SuppressFBWarnings("EI_EXPOSE_REP2")
+    Bundler(Parser parser, Serializer serializer, Options options, ResolutionCache cache)
+            throws JsonProcessingException, IOException {
         this.serializer = serializer;
         this.parser = parser;
+        this.options = options;
+        this.cache = cache;
     }
 
     public Mapping bundle(Document document)
             throws URISyntaxException, JsonProcessingException, IOException, BundlingException {
-        crawl(document.root, document.root.node, null, new JsonPath(), new JsonPath(), new HashSet<>());
+        return bundle(document, document.root.node, Collections.singletonList(new JsonPath()),
+                options.isTreeShaking(), options.isInPlace());
+    }
+
+    /**
+     * Bundles only the selected path items or operations, such as
+     * /paths/~1pets/get, along with the rest of the document outside of paths,
+     * webhooks and components, and the components they refer to. Only the files
+     * reachable from these are loaded. A selection going through a $ref to a path
+     * item selects the whole path item.
+     *
+     * The bundled document is always tree shaken and never bundled in place,
+     * whatever the options: the parsed document is left untouched, so that it can
+     * be bundled again with other selections, see Bundler.getBundled().
+     */
+    public Mapping bundle(Document document, Collection<JsonPointer> pointers)
+            throws URISyntaxException, JsonProcessingException, IOException, BundlingException {
+        JsonNode root = Selector.select(document.root.node, pointers);
+        ArrayList<JsonPath> roots = new ArrayList<>(TreeShaker.getRoots(root));
+        roots.addAll(TreeShaker.findReachable(root));
+        return bundle(document, root, roots, true, false);
+    }
+
+    private Mapping bundle(Document document, JsonNode root, List<JsonPath> roots, boolean treeShaking,
+            boolean inPlace) throws URISyntaxException, JsonProcessingException, IOException, BundlingException {
+        Prefetcher prefetcher = null;
+        if (options.getPrefetchExecutor() != null) {
+            prefetcher = new Prefetcher(parser, options.getPrefetchExecutor(), document);
+            for (JsonPath path : roots) {
+                prefetcher.prefetch(document.root, get(root, path));
+            }
+        }
+        BundlerListener listener = parser.getListener();
+        boolean timed = listener != BundlerListener.NONE;
+        listener.crawlStarted(document.root.location);
+        long start = timed ? System.nanoTime() : 0;
+        try {
+            for (JsonPath path : roots) {
+                if (path.isEmpty()) {
+                    crawl(document.root, root, null, path, path);
+                } else {
+                    crawl(document.root, get(root, path.getParent()), path.getLastKey(), path, path);
+                }
+            }
+        } finally {
+            if (prefetcher != null) {
+                prefetcher.stop();
+            }
+        }
+        if (timed) {
+            listener.crawlFinished(document.root.location, refs, inventory.size(), cache.getHits(),
+                    System.nanoTime() - start);
+        }
         if (failures.size() == 0) {
-            return remap(document);
+            Mapping mapping = remap(document, root, inPlace);
+            if (options.isDeduplication()) {
+                bundled = Deduplicator.deduplicate(bundled, mapping, components, inPlace);
+            }
+            if (treeShaking) {
+                bundled = TreeShaker.shake(bundled, mapping, inPlace);
+            }
+            return mapping;
         }
         throw new BundlingException("Failed to bundle OpenAPI file", failures);
     }
 
+    private static JsonNode get(JsonNode root, JsonPath path) {
+        JsonNode current = root;
+        for (String key : path) {
+            current = Util.get(current, key);
+        }
+        return current;
+    }
+
+    /**
+     * @deprecated crawled values are tracked by the bundler, the set of visited
+     *             URIs is ignored
+     */
+    @Deprecated
     public void crawl(final Document.Part part, final JsonNode parent, String key, JsonPath path, JsonPath pathFromRoot,
             HashSet<URI> visited) throws URISyntaxException, JsonProcessingException, IOException {
+        crawl(part, parent, key, path, pathFromRoot);
+    }
+
+    public void crawl(final Document.Part part, final JsonNode parent, String key, JsonPath path, JsonPath pathFromRoot)
+            throws URISyntaxException, JsonProcessingException, IOException {
+        // depth-first traversal with an explicit stack, so that deeply nested documents
+        // don't overflow the call stack. Frames only record keys, paths are built when
+        // a $ref is found
+        ArrayDeque<Frame> stack = new ArrayDeque<>();
         final JsonNode node = key == null ? parent : Util.get(parent, key);
+        int owner = graph.getId(part.location, path.toPointer());
+        graph.markCrawled(owner);
+        visit(stack, part, parent, key, node, path, pathFromRoot, owner);
+
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (frame.fields != null && frame.fields.hasNext()) {
+                String fieldName = frame.fields.next();
+                JsonNode child = frame.node.get(fieldName);
+                if (Resolver.isRef(child)) {
+                    visit(stack, frame.part, frame.node, fieldName, child, frame.path(fieldName),
+                            frame.pathFromRoot(fieldName), frame.base.owner);
+                } else if (child.isContainerNode()) {
+                    stack.push(new Frame(frame, fieldName, -1, child));
+                }
+            } else if (frame.fields == null && frame.next < frame.node.size()) {
+                int index = frame.next++;
+                JsonNode child = frame.node.get(index);
+                if (Resolver.isRef(child)) {
+                    String indexKey = JsonPath.index(index);
+                    visit(stack, frame.part, frame.node, indexKey, child, frame.path(indexKey),
+                            frame.pathFromRoot(indexKey), frame.base.owner);
+                } else if (child.isContainerNode()) {
+                    stack.push(new Frame(frame, null, index, child));
+                }
+            } else {
+                stack.pop();
+            }
+        }
+    }
 
+    /**
+     * Visits a node of the crawled value with the given id, adding the edges to
+     * the $refs found and to the values they resolve to to the graph.
+     */
+    private void visit(ArrayDeque<Frame> stack, final Document.Part part, final JsonNode parent, String key,
+            JsonNode node, JsonPath path, JsonPath pathFromRoot, int owner)
+            throws URISyntaxException, JsonProcessingException, IOException {
         if (Resolver.isRef(node)) {
+            refs++;
             Reference reference = new Reference(part, node, path.toPointer());
-            Resolver.resolveReference(parser, reference);
+            int id = graph.getId(part.location, reference.pointer);
+            graph.addEdge(owner, id);
+            Resolver.resolveReference(parser, cache, graph, reference);
             if (reference.isResolved()) {
                 inventory.add(parent, key, pathFromRoot, reference);
+                int target = graph.getId(reference.resolvedPart.location, reference.resolvedPath.toPointer());
+                graph.addEdge(id, target);
                 // don't crawl unresolved and circular references
-                if (reference.isResolved() && !reference.circular && !visited.contains(reference.getResolvedURI())) {
-                    visited.add(reference.getResolvedURI());
-                    crawl(reference.resolvedPart, reference.resolvedValue, null, reference.resolvedPath, pathFromRoot,
-                            visited);
+                if (!reference.circular && graph.markCrawled(target)) {
+                    visit(stack, reference.resolvedPart, reference.resolvedValue, null, reference.resolvedValue,
+                            reference.resolvedPath, pathFromRoot, target);
                 }
             } else {
                 failures.add(reference.failure);
             }
+        } else if (node.isContainerNode()) {
+            stack.push(new Frame(part, node, path, pathFromRoot, owner));
+        }
+    }
 
-        } else if (node.isObject()) {
-            Iterator<String> iterator = node.fieldNames();
-            while (iterator.hasNext()) {
-                String fieldName = iterator.next();
-                crawl(part, node, fieldName, path.withKey(fieldName), pathFromRoot.withKey(fieldName), visited);
-            }
-        } else if (node.isArray()) {
-            for (int i = 0; i < node.size(); i++) {
-                String index = Integer.toString(i);
-                crawl(part, node, index, path.withKey(index), pathFromRoot.withKey(index), visited);
-            }
+    Mapping remap(Document document) throws UnsupportedEncodingException {
+        return remap(document, document.root.node, options.isInPlace());
+    }
+
+    private Mapping remap(Document document, JsonNode root, boolean inPlace) throws UnsupportedEncodingException {
+        BundlerListener listener = parser.getListener();
+        if (listener == BundlerListener.NONE) {
+            return remap(root, new Mapping(), inPlace);
         }
+        listener.remapStarted(document.root.location);
+        long start = System.nanoTime();
+        Mapping mapping = remap(root, new Mapping(), inPlace);
+        listener.remapFinished(document.root.location, System.nanoTime() - start);
+        return mapping;
     }
 
-    private Mapping remap(Document document) throws UnsupportedEncodingException {
-        Mapping mapping = new Mapping();
-        inventory.sort();
+    private Mapping remap(JsonNode root, Mapping mapping, boolean inPlace) throws UnsupportedEncodingException {
+        BundleWriter writer = inPlace ? new BundleWriter.InPlace(serializer, root)
+                : new BundleWriter.Copying(serializer, root);
 
-        URI file = null;
-        JsonPath path = null;
-        JsonPointer pointer = null;
-        JsonPath pathFromRoot = null;
-        URI filename = null;
+        components.clear();
+        // locations of the remapped targets in the bundled document, by file id.
+        // Targets are sorted so that a target is remapped before the targets
+        // pointing inside of it
+        ArrayList<PathTrie<JsonPath>> remappedTargets = new ArrayList<>();
 
-        for (Entry entry : inventory) {
-            if (!entry.external) {
-                Util.setRef(entry.ref, entry.pointer);
-            } else if (entry.file.equals(file) && entry.pointer.equals(pointer)) {
-                Util.setRef(entry.ref, pathFromRoot.toPointer());
-            } else if (entry.file.equals(file) && entry.path.isSubPathOf(path)) {
-                List<String> tail = entry.path.subList(path.size(), entry.path.size());
-                Util.setRef(entry.ref, pathFromRoot.withKeys(tail).toPointer());
-            } else {
-                file = entry.file;
-                filename = entry.part.getFilename();
-                pointer = entry.pointer;
-                path = entry.path;
-                pathFromRoot = entry.pathFromRoot;
-
-                JsonNode value = entry.value;
-                if (Resolver.isExtendedRef(entry.ref)) {
-                    value = Resolver.mergeExtendedRef(serializer, entry.ref, value);
-                }
+        for (Inventory.Target target : inventory.getTargets()) {
+            while (remappedTargets.size() <= target.fileId) {
+                remappedTargets.add(new PathTrie<>());
+            }
+            PathTrie<JsonPath> remappedTarget = remappedTargets.get(target.fileId);
 
-                if (entry.circular) {
-                    Util.setRef(entry.ref, pathFromRoot.toPointer());
-                }
+            for (Entry entry : target.entries) {
+                PathTrie.Match<JsonPath> match;
+                if (!entry.external) {
+                    writer.setRef(entry.ref, entry.pointer);
+                } else if ((match = remappedTarget.findPrefix(entry.path)) != null) {
+                    List<String> tail = entry.path.subList(match.length, entry.path.size());
+                    writer.setRef(entry.ref, match.value.withKeys(tail).toPointer());
+                } else {
+                    URI filename = entry.part.getFilename();
+                    JsonPointer pointer = entry.pointer;
+                    JsonPath pathFromRoot = entry.pathFromRoot;
 
-                if (entry.path.size() >= 3 && entry.path.get(0).equals("components")) {
-                    // remap entries to #/components
-                    JsonPath remapped = new JsonPath(entry.path.get(0), entry.path.get(1),
-                            externalEntryToComponentName(entry.part, entry.path));
-                    if (entry.path.size() > 3) {
-                        remapped.addAll(entry.path.subList(3, entry.path.size()));
+                    JsonNode value = entry.value;
+                    if (Resolver.isExtendedRef(entry.ref)) {
+                        value = Resolver.mergeExtendedRef(serializer, entry.ref, value);
                     }
-                    Util.set(serializer, document.root.node, remapped, value);
-                    pathFromRoot = remapped;
-                    Util.setRef(entry.ref, pathFromRoot.toPointer());
-                    insertMapping(mapping, remapped, filename, pointer);
-                } else if (entry.path.size() >= 2 && (entry.path.get(0).equals("parameters")
-                        || entry.path.get(0).equals("definitions") || entry.path.get(0).equals("responses"))) {
-                    // remap entries to #/parameters or #/definitions or #/responses
-                    JsonPath remapped = new JsonPath(entry.path.get(0),
-                            externalEntryToComponentName(entry.part, entry.path));
-                    if (entry.path.size() > 2) {
-                        remapped.addAll(entry.path.subList(2, entry.path.size()));
+
+                    if (entry.circular) {
+                        writer.setRef(entry.ref, pathFromRoot.toPointer());
                     }
-                    Util.set(serializer, document.root.node, remapped, value);
-                    pathFromRoot = remapped;
-                    Util.setRef(entry.ref, pathFromRoot.toPointer());
-                    insertMapping(mapping, remapped, filename, pointer);
-                } else {
-                    Util.set(entry.parent, entry.key, value);
-                    insertMapping(mapping, entry.pathFromRoot, filename, pointer);
+
+                    if (entry.path.size() >= 3 && entry.path.get(0).equals("components")) {
+                        // remap entries to #/components
+                        JsonPath remapped = new JsonPath(entry.path.get(0), entry.path.get(1),
+                                externalEntryToComponentName(entry.part, entry.path))
+                                        .withKeys(entry.path.subList(3, entry.path.size()));
+                        writer.add(remapped, value);
+                        if (remapped.size() == 3) {
+                            components.add(remapped);
+                        }
+                        pathFromRoot = remapped;
+                        writer.setRef(entry.ref, pathFromRoot.toPointer());
+                        insertMapping(mapping, remapped, filename, pointer);
+                    } else if (entry.path.size() >= 2 && (entry.path.get(0).equals("parameters")
+                            || entry.path.get(0).equals("definitions") || entry.path.get(0).equals("responses"))) {
+                        // remap entries to #/parameters or #/definitions or #/responses
+                        JsonPath remapped = new JsonPath(entry.path.get(0),
+                                externalEntryToComponentName(entry.part, entry.path))
+                                        .withKeys(entry.path.subList(2, entry.path.size()));
+                        writer.add(remapped, value);
+                        if (remapped.size() == 2) {
+                            components.add(remapped);
+                        }
+                        pathFromRoot = remapped;
+                        writer.setRef(entry.ref, pathFromRoot.toPointer());
+                        insertMapping(mapping, remapped, filename, pointer);
+                    } else {
+                        writer.set(entry.parent, entry.key, value);
+                        insertMapping(mapping, entry.pathFromRoot, filename, pointer);
+                    }
+                    remappedTarget.put(entry.path, pathFromRoot);
                 }
             }
         }
+        bundled = writer.build();
         return mapping;
     }
 
     private void insertMapping(Mapping mapping, JsonPath path, URI filename, JsonPointer pointer) {
-        Mapping current = mapping;
-        for (String key : path) {
-            if (!current.children.containsKey(key)) {
-                current.children.put(key, new Mapping());
-            }
-            current = current.children.get(key);
-        }
-        // TODO check that current.value is empty
-        current.value = new Mapping.Location(filename, pointer);
+        mapping.insert(path, new Mapping.Location(filename, pointer));
     }
 
     private String externalEntryToComponentName(Document.Part part, JsonPath path) throws UnsupportedEncodingException {
@@ -158,8 +382,109 @@ public class Bundler {
         return name.replaceAll("[~\\/\\#:%]", "-");
     }
 
+    /**
+     * Returns the root of the bundled document, which is the root of the parsed
+     * document itself unless bundling with Options.setInPlace(false).
+     */
+    @SuppressFBWarnings("EI_EXPOSE_REP")
+    public JsonNode getBundled() {
+        return bundled;
+    }
+
+    RefGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Returns the dependencies between the locations and files met while
+     * bundling, or crawling.
+     */
+    @SuppressFBWarnings("EI_EXPOSE_REP")
+    public ReferenceGraph getReferenceGraph() {
+        // built when first asked for, and again if the crawl went on since
+        if (referenceGraph == null || referenceGraph.size() != graph.size()
+                || referenceGraphEdges != graph.getEdgeCount()) {
+            referenceGraph = new ReferenceGraph(graph);
+            referenceGraphEdges = graph.getEdgeCount();
+        }
+        return referenceGraph;
+    }
+
     @SuppressFBWarnings("EI_EXPOSE_REP")
     public Inventory getInventory() {
         return inventory;
     }
+
+    @SuppressFBWarnings("EI_EXPOSE_REP")
+    public ResolutionCache getResolutionCache() {
+        return cache;
+    }
+
+    /**
+     * Container node on the crawl stack. Frames started at the beginning of the
+     * crawl or at a resolved $ref hold complete paths, other frames hold their key
+     * and a link to the enclosing frame.
+     */
+    private static final class Frame {
+        final Frame parent;
+        final String key;
+        final int index;
+        final JsonNode node;
+        final Document.Part part;
+        final Frame base;
+        final int depth;
+        final JsonPath path;
+        final JsonPath pathFromRoot;
+        final Iterator<String> fields;
+        // id of the crawled value in the graph, set on base frames only
+        final int owner;
+        int next = 0;
+
+        Frame(Document.Part part, JsonNode node, JsonPath path, JsonPath pathFromRoot, int owner) {
+            this.parent = null;
+            this.key = null;
+            this.index = -1;
+            this.node = node;
+            this.part = part;
+            this.base = this;
+            this.depth = 0;
+            this.path = path;
+            this.pathFromRoot = pathFromRoot;
+            this.fields = node.isObject() ? node.fieldNames() : null;
+            this.owner = owner;
+        }
+
+        Frame(Frame parent, String key, int index, JsonNode node) {
+            this.parent = parent;
+            this.key = key;
+            this.index = index;
+            this.node = node;
+            this.part = parent.part;
+            this.base = parent.base;
+            this.depth = parent.depth + 1;
+            this.path = null;
+            this.pathFromRoot = null;
+            this.fields = node.isObject() ? node.fieldNames() : null;
+            this.owner = -1;
+        }
+
+        JsonPath path(String child) {
+            return base.path.withKeys(keys(child));
+        }
+
+        JsonPath pathFromRoot(String child) {
+            return base.pathFromRoot.withKeys(keys(child));
+        }
+
+        private List<String> keys(String child) {
+            String[] keys = new String[depth + 1];
+            keys[depth] = child;
+            Frame frame = this;
+            for (int i = depth - 1; i >= 0; i--) {
+                keys[i] = frame.key != null ? frame.key : JsonPath.index(frame.index);
+                frame = frame.parent;
+            }
+            return Arrays.asList(keys);
+        }
+    }
 }
\ No newline at end of file
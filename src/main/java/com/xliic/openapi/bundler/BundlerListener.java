@@ -0,0 +1,73 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.net.URI;
+
+/**
+ * Receives notifications about the phases of bundling: loading files, resolving
+ * references, crawling, remapping and serializing. All methods do nothing by
+ * default.
+ *
+ * Files can be loaded concurrently when prefetching is enabled, so
+ * implementations must be thread-safe. Durations are in nanoseconds.
+ */
+public interface BundlerListener {
+    BundlerListener NONE = new BundlerListener() {
+    };
+
+    /**
+     * Returns a listener notifying each of the given listeners in turn, for example
+     * to collect BundlerMetrics and record JFR events at the same time.
+     */
+    static BundlerListener all(BundlerListener... listeners) {
+        return new CompositeListener(listeners);
+    }
+
+    default void loadStarted(URI uri) {
+    }
+
+    /**
+     * Size is in characters for text contents, in bytes for byte contents and -1
+     * if it is not known.
+     */
+    default void loadFinished(URI uri, long size, long readNanos, long parseNanos) {
+    }
+
+    default void loadFailed(URI uri, Exception e) {
+    }
+
+    default void partCacheHit(URI uri) {
+    }
+
+    default void partCacheMiss(URI uri) {
+    }
+
+    default void resolveStarted(Reference reference) {
+    }
+
+    default void resolveFinished(Reference reference) {
+    }
+
+    default void crawlStarted(URI root) {
+    }
+
+    default void crawlFinished(URI root, int refs, int inventorySize, int resolutionCacheHits, long nanos) {
+    }
+
+    default void remapStarted(URI root) {
+    }
+
+    default void remapFinished(URI root, long nanos) {
+    }
+
+    /**
+     * Size is in characters when serializing to a String or a Writer, in bytes
+     * otherwise.
+     */
+    default void serializeFinished(long size, long nanos) {
+    }
+}
@@ -0,0 +1,202 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Listener adding up counters and timings of all the bundling phases it is
+ * notified of. Use one instance per bundle, or call reset() between bundles, to
+ * get a per-bundle report.
+ */
+public class BundlerMetrics implements BundlerListener {
+    private final LongAdder filesLoaded = new LongAdder();
+    private final LongAdder filesFailed = new LongAdder();
+    private final LongAdder sizeLoaded = new LongAdder();
+    private final LongAdder readNanos = new LongAdder();
+    private final LongAdder parseNanos = new LongAdder();
+    private final LongAdder partCacheHits = new LongAdder();
+    private final LongAdder partCacheMisses = new LongAdder();
+    private final LongAdder resolved = new LongAdder();
+    private final LongAdder unresolved = new LongAdder();
+    private final LongAdder refs = new LongAdder();
+    private final LongAdder inventorySize = new LongAdder();
+    private final LongAdder resolutionCacheHits = new LongAdder();
+    private final LongAdder crawlNanos = new LongAdder();
+    private final LongAdder remapNanos = new LongAdder();
+    private final LongAdder serializedSize = new LongAdder();
+    private final LongAdder serializeNanos = new LongAdder();
+
+    @Override
+    public void loadFinished(URI uri, long size, long readNanos, long parseNanos) {
+        filesLoaded.increment();
+        if (size > 0) {
+            sizeLoaded.add(size);
+        }
+        this.readNanos.add(readNanos);
+        this.parseNanos.add(parseNanos);
+    }
+
+    @Override
+    public void loadFailed(URI uri, Exception e) {
+        filesFailed.increment();
+    }
+
+    @Override
+    public void partCacheHit(URI uri) {
+        partCacheHits.increment();
+    }
+
+    @Override
+    public void partCacheMiss(URI uri) {
+        partCacheMisses.increment();
+    }
+
+    @Override
+    public void resolveFinished(Reference reference) {
+        if (reference.isResolved()) {
+            resolved.increment();
+        } else {
+            unresolved.increment();
+        }
+    }
+
+    @Override
+    public void crawlFinished(URI root, int refs, int inventorySize, int resolutionCacheHits, long nanos) {
+        this.refs.add(refs);
+        this.inventorySize.add(inventorySize);
+        this.resolutionCacheHits.add(resolutionCacheHits);
+        crawlNanos.add(nanos);
+    }
+
+    @Override
+    public void remapFinished(URI root, long nanos) {
+        remapNanos.add(nanos);
+    }
+
+    @Override
+    public void serializeFinished(long size, long nanos) {
+        serializedSize.add(size);
+        serializeNanos.add(nanos);
+    }
+
+    public long getFilesLoaded() {
+        return filesLoaded.sum();
+    }
+
+    public long getFilesFailed() {
+        return filesFailed.sum();
+    }
+
+    /**
+     * Returns the size of the files loaded, counting characters for text contents
+     * and bytes for byte contents, see BundlerListener.loadFinished().
+     */
+    public long getSizeLoaded() {
+        return sizeLoaded.sum();
+    }
+
+    public long getReadNanos() {
+        return readNanos.sum();
+    }
+
+    public long getParseNanos() {
+        return parseNanos.sum();
+    }
+
+    public long getPartCacheHits() {
+        return partCacheHits.sum();
+    }
+
+    public long getPartCacheMisses() {
+        return partCacheMisses.sum();
+    }
+
+    /**
+     * Returns the number of references resolved, including the ones resolved
+     * while following chains of references.
+     */
+    public long getResolved() {
+        return resolved.sum();
+    }
+
+    public long getUnresolved() {
+        return unresolved.sum();
+    }
+
+    /**
+     * Returns the number of references found while crawling.
+     */
+    public long getRefs() {
+        return refs.sum();
+    }
+
+    public long getInventorySize() {
+        return inventorySize.sum();
+    }
+
+    public long getResolutionCacheHits() {
+        return resolutionCacheHits.sum();
+    }
+
+    public long getCrawlNanos() {
+        return crawlNanos.sum();
+    }
+
+    public long getRemapNanos() {
+        return remapNanos.sum();
+    }
+
+    /**
+     * Returns the serialized size, in characters or bytes depending on the
+     * output, see BundlerListener.serializeFinished().
+     */
+    public long getSerializedSize() {
+        return serializedSize.sum();
+    }
+
+    public long getSerializeNanos() {
+        return serializeNanos.sum();
+    }
+
+    public void reset() {
+        for (LongAdder adder : new LongAdder[] { filesLoaded, filesFailed, sizeLoaded, readNanos, parseNanos,
+                partCacheHits, partCacheMisses, resolved, unresolved, refs, inventorySize, resolutionCacheHits,
+                crawlNanos, remapNanos, serializedSize, serializeNanos }) {
+            adder.reset();
+        }
+    }
+
+    /**
+     * Returns a human readable summary, one line per phase. Load times are summed
+     * over all files, so they can exceed the crawl time when prefetching. Sizes
+     * are in characters or bytes, depending on the contents.
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("load: %d files (%d failed), size %d, read %d ms, parse %d ms%n",
+                getFilesLoaded(), getFilesFailed(), getSizeLoaded(), millis(getReadNanos()),
+                millis(getParseNanos())));
+        report.append(String.format("part cache: %d hits, %d misses%n", getPartCacheHits(), getPartCacheMisses()));
+        report.append(String.format("crawl: %d refs, %d resolved, %d unresolved, %d cache hits, %d ms%n", getRefs(),
+                getResolved(), getUnresolved(), getResolutionCacheHits(), millis(getCrawlNanos())));
+        report.append(String.format("inventory: %d entries%n", getInventorySize()));
+        report.append(String.format("remap: %d ms%n", millis(getRemapNanos())));
+        report.append(String.format("serialize: size %d, %d ms%n", getSerializedSize(), millis(getSerializeNanos())));
+        return report.toString();
+    }
+
+    @Override
+    public String toString() {
+        return getReport();
+    }
+
+    private static long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Bundles many root documents concurrently. Each root gets its own Bundler,
+ * while the Parser and the Serializer are shared between all of them, so the
+ * Workspace must support concurrent reads.
+ *
+ * The number of roots submitted but not yet bundled is bounded: bundle() blocks
+ * until one of the pending roots is done when the limit is reached.
+ */
+public class BundlerService implements AutoCloseable {
+    private final Parser parser;
+    private final Serializer serializer;
+    private final Bundler.Options bundlerOptions;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore pending;
+
+    public static class Options {
+        private int threads;
+        private int maxPending;
+        private Bundler.Options bundlerOptions;
+
+        public Options() {
+            this.threads = Runtime.getRuntime().availableProcessors();
+            this.maxPending = threads * 4;
+            this.bundlerOptions = new Bundler.Options();
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            if (threads < 1) {
+                throw new IllegalArgumentException("Number of threads must be positive");
+            }
+            this.threads = threads;
+        }
+
+        public int getMaxPending() {
+            return maxPending;
+        }
+
+        /**
+         * Sets the number of roots which can be submitted before bundle() blocks,
+         * including the ones being bundled.
+         */
+        public void setMaxPending(int maxPending) {
+            if (maxPending < 1) {
+                throw new IllegalArgumentException("Number of pending roots must be positive");
+            }
+            this.maxPending = maxPending;
+        }
+
+        @SuppressFBWarnings("EI_EXPOSE_REP")
+        public Bundler.Options getBundlerOptions() {
+            return bundlerOptions;
+        }
+
+        @SuppressFBWarnings("EI_EXPOSE_REP2")
+        public void setBundlerOptions(Bundler.Options bundlerOptions) {
+            this.bundlerOptions = bundlerOptions;
+        }
+    }
+
+    public BundlerService(Parser parser, Serializer serializer) {
+        this(parser, serializer, new Options());
+    }
+
+    @SuppressFBWarnings("EI_EXPOSE_REP2")
+    public BundlerService(Parser parser, Serializer serializer, Options options) {
+        this.parser = parser;
+        this.serializer = serializer;
+        this.bundlerOptions = options.getBundlerOptions();
+        // the queue is unbounded, the semaphore limits the number of tasks in it
+        this.executor = new ThreadPoolExecutor(options.getThreads(), options.getThreads(), 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new BundlerThreadFactory());
+        this.pending = new Semaphore(options.getMaxPending());
+    }
+
+    /**
+     * Submits a root document for bundling, blocking while the maximum number of
+     * pending roots is reached. The returned future completes with the Bundle, or
+     * exceptionally with a BundlingException if references failed to resolve, or
+     * with the exception thrown while parsing or bundling.
+     */
+    public CompletableFuture<Bundle> bundle(URI root) throws InterruptedException {
+        pending.acquire();
+        CompletableFuture<Bundle> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(bundleRoot(root));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    pending.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.release();
+            throw e;
+        }
+        return future;
+    }
+
+    /**
+     * Submits each of the root documents, see bundle(URI). Returns futures in the
+     * order of the roots.
+     */
+    public List<CompletableFuture<Bundle>> bundle(Collection<URI> roots) throws InterruptedException {
+        List<CompletableFuture<Bundle>> futures = new ArrayList<>(roots.size());
+        for (URI root : roots) {
+            futures.add(bundle(root));
+        }
+        return futures;
+    }
+
+    private Bundle bundleRoot(URI root) throws Exception {
+        Document document = parser.parse(root);
+        Bundler bundler = new Bundler(parser, serializer, bundlerOptions);
+        Mapping mapping = bundler.bundle(document);
+        return new Bundle(root, bundler.getBundled(), mapping);
+    }
+
+    /**
+     * Stops accepting roots and waits for the pending ones to be bundled. If the
+     * calling thread is interrupted, stops waiting and keeps the interrupt status
+     * set, pending roots are still bundled in the background.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            while (!awaitTermination(1, TimeUnit.MINUTES)) {
+                // keep waiting for pending roots
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for the pending roots to be bundled after close(), returns false if the
+     * timeout elapsed first.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    private static class BundlerThreadFactory implements ThreadFactory {
+        private static final AtomicInteger POOL = new AtomicInteger();
+        private final int pool = POOL.incrementAndGet();
+        private final AtomicInteger thread = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread t = new Thread(runnable, "openapi-bundler-" + pool + "-" + thread.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.net.URI;
+
+class CompositeListener implements BundlerListener {
+    private final BundlerListener[] listeners;
+
+    CompositeListener(BundlerListener[] listeners) {
+        this.listeners = listeners.clone();
+    }
+
+    @Override
+    public void loadStarted(URI uri) {
+        for (BundlerListener listener : listeners) {
+            listener.loadStarted(uri);
+        }
+    }
+
+    @Override
+    public void loadFinished(URI uri, long size, long readNanos, long parseNanos) {
+        for (BundlerListener listener : listeners) {
+            listener.loadFinished(uri, size, readNanos, parseNanos);
+        }
+    }
+
+    @Override
+    public void loadFailed(URI uri, Exception e) {
+        for (BundlerListener listener : listeners) {
+            listener.loadFailed(uri, e);
+        }
+    }
+
+    @Override
+    public void partCacheHit(URI uri) {
+        for (BundlerListener listener : listeners) {
+            listener.partCacheHit(uri);
+        }
+    }
+
+    @Override
+    public void partCacheMiss(URI uri) {
+        for (BundlerListener listener : listeners) {
+            listener.partCacheMiss(uri);
+        }
+    }
+
+    @Override
+    public void resolveStarted(Reference reference) {
+        for (BundlerListener listener : listeners) {
+            listener.resolveStarted(reference);
+        }
+    }
+
+    @Override
+    public void resolveFinished(Reference reference) {
+        for (BundlerListener listener : listeners) {
+            listener.resolveFinished(reference);
+        }
+    }
+
+    @Override
+    public void crawlStarted(URI root) {
+        for (BundlerListener listener : listeners) {
+            listener.crawlStarted(root);
+        }
+    }
+
+    @Override
+    public void crawlFinished(URI root, int refs, int inventorySize, int resolutionCacheHits, long nanos) {
+        for (BundlerListener listener : listeners) {
+            listener.crawlFinished(root, refs, inventorySize, resolutionCacheHits, nanos);
+        }
+    }
+
+    @Override
+    public void remapStarted(URI root) {
+        for (BundlerListener listener : listeners) {
+            listener.remapStarted(root);
+        }
+    }
+
+    @Override
+    public void remapFinished(URI root, long nanos) {
+        for (BundlerListener listener : listeners) {
+            listener.remapFinished(root, nanos);
+        }
+    }
+
+    @Override
+    public void serializeFinished(long size, long nanos) {
+        for (BundlerListener listener : listeners) {
+            listener.serializeFinished(size, nanos);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Merges structurally identical components added to the bundled document when
+ * remapping external references.
+ *
+ * Duplicates are removed and references to them are redirected to the first
+ * identical component. Since redirecting references can make more components
+ * identical, this is repeated until no duplicates are left. Components only
+ * differing by references to themselves, directly or through a cycle, are not
+ * merged.
+ *
+ * The hash code of each component is computed once and updated only when a
+ * reference within it is redirected, and the references to each component are
+ * indexed by a single scan of the document.
+ */
+class Deduplicator {
+    private final boolean inPlace;
+    private final Mapping mapping;
+    // containers copied by the deduplicator, which are safe to modify
+    private final Set<JsonNode> owned = Collections.newSetFromMap(new IdentityHashMap<>());
+    // structural hash codes of the remaining components
+    private final HashMap<JsonPath, Integer> hashes = new HashMap<>();
+    // paths of the $refs pointing to or into each component
+    private final HashMap<JsonPath, ArrayList<JsonPath>> referrers = new HashMap<>();
+    private JsonNode root;
+
+    private Deduplicator(JsonNode root, Mapping mapping, boolean inPlace) {
+        this.root = root;
+        this.mapping = mapping;
+        this.inPlace = inPlace;
+    }
+
+    /**
+     * Returns the document without duplicates of the given components, mapping
+     * the locations they came from to the remaining copy. Unless done in place,
+     * containers are copied before being modified, the document itself is left
+     * untouched.
+     */
+    static JsonNode deduplicate(JsonNode root, Mapping mapping, Collection<JsonPath> components, boolean inPlace) {
+        Deduplicator deduplicator = new Deduplicator(root, mapping, inPlace);
+        ArrayList<JsonPath> remaining = new ArrayList<>();
+        for (JsonPath path : components) {
+            JsonNode node = deduplicator.get(path);
+            if (node != null) {
+                deduplicator.hashes.put(path, node.hashCode());
+                remaining.add(path);
+            }
+        }
+        LinkedHashMap<JsonPath, JsonPath> duplicates = deduplicator.findDuplicates(remaining);
+        if (!duplicates.isEmpty()) {
+            deduplicator.index();
+        }
+        while (!duplicates.isEmpty()) {
+            deduplicator.redirect(duplicates);
+            deduplicator.remove(duplicates);
+            remaining.removeAll(duplicates.keySet());
+            duplicates = deduplicator.findDuplicates(remaining);
+        }
+        return deduplicator.root;
+    }
+
+    /**
+     * Returns duplicates mapped to the component they are identical to, only
+     * components in the same section can be identical.
+     */
+    private LinkedHashMap<JsonPath, JsonPath> findDuplicates(Collection<JsonPath> components) {
+        HashMap<JsonPath, HashMap<Integer, ArrayList<JsonPath>>> sections = new HashMap<>();
+        LinkedHashMap<JsonPath, JsonPath> duplicates = new LinkedHashMap<>();
+        for (JsonPath path : components) {
+            HashMap<Integer, ArrayList<JsonPath>> section = sections.get(path.getParent());
+            if (section == null) {
+                section = new HashMap<>();
+                sections.put(path.getParent(), section);
+            }
+            ArrayList<JsonPath> candidates = section.get(hashes.get(path));
+            if (candidates == null) {
+                candidates = new ArrayList<>();
+                section.put(hashes.get(path), candidates);
+            }
+            JsonPath canonical = null;
+            JsonNode node = get(path);
+            for (JsonPath candidate : candidates) {
+                // JsonNode equality is structural
+                if (node.equals(get(candidate))) {
+                    canonical = candidate;
+                    break;
+                }
+            }
+            if (canonical != null) {
+                duplicates.put(path, canonical);
+            } else {
+                candidates.add(path);
+            }
+        }
+        return duplicates;
+    }
+
+    /**
+     * Indexes the local references to the components by the component they point
+     * to or into.
+     */
+    private void index() {
+        ArrayDeque<JsonNode> nodes = new ArrayDeque<>();
+        ArrayDeque<JsonPath> paths = new ArrayDeque<>();
+        nodes.push(root);
+        paths.push(new JsonPath());
+        while (!nodes.isEmpty()) {
+            JsonNode node = nodes.pop();
+            JsonPath path = paths.pop();
+            if (Resolver.isRef(node)) {
+                JsonPath target = getComponent(getLocalPath(node.get("$ref").asText()));
+                if (target != null) {
+                    referrers.computeIfAbsent(target, key -> new ArrayList<>()).add(path);
+                }
+            }
+            if (node.isObject()) {
+                Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    if (field.getValue().isContainerNode()) {
+                        nodes.push(field.getValue());
+                        paths.push(path.withKey(field.getKey()));
+                    }
+                }
+            } else if (node.isArray()) {
+                for (int i = 0; i < node.size(); i++) {
+                    if (node.get(i).isContainerNode()) {
+                        nodes.push(node.get(i));
+                        paths.push(path.withKey(JsonPath.index(i)));
+                    }
+                }
+            }
+        }
+    }
+
+    private void redirect(Map<JsonPath, JsonPath> duplicates) {
+        HashSet<JsonPath> changed = new HashSet<>();
+        for (Map.Entry<JsonPath, JsonPath> duplicate : duplicates.entrySet()) {
+            ArrayList<JsonPath> refs = referrers.remove(duplicate.getKey());
+            if (refs == null) {
+                continue;
+            }
+            for (JsonPath ref : refs) {
+                JsonPath owner = getComponent(ref);
+                // references within removed components are dropped with them
+                if (duplicates.containsKey(owner) || get(ref) == null) {
+                    continue;
+                }
+                JsonNode node = own(ref);
+                JsonPath target = getLocalPath(node.get("$ref").asText());
+                JsonPath canonical = duplicate.getValue();
+                Util.setRef(node, canonical.withKeys(target.subList(duplicate.getKey().size(), target.size()))
+                        .toPointer());
+                referrers.computeIfAbsent(canonical, key -> new ArrayList<>()).add(ref);
+                if (owner != null) {
+                    changed.add(owner);
+                }
+            }
+        }
+        for (JsonPath component : changed) {
+            hashes.put(component, get(component).hashCode());
+        }
+    }
+
+    /**
+     * Returns the path a local reference points to, or null if it isn't local.
+     */
+    private static JsonPath getLocalPath(String ref) {
+        if (!ref.startsWith("#")) {
+            return null;
+        }
+        String fragment;
+        try {
+            fragment = new URI(ref).getFragment();
+        } catch (URISyntaxException e) {
+            return null;
+        }
+        if (fragment == null) {
+            return null;
+        }
+        return new JsonPointer(fragment).getJsonPath();
+    }
+
+    /**
+     * Returns the remaining component the path is in, or null.
+     */
+    private JsonPath getComponent(JsonPath path) {
+        if (path == null) {
+            return null;
+        }
+        // components are at #/definitions/name or #/components/schemas/name
+        for (int length = 2; length <= 3 && length <= path.size(); length++) {
+            JsonPath component = new JsonPath(path.subList(0, length));
+            if (hashes.containsKey(component)) {
+                return component;
+            }
+        }
+        return null;
+    }
+
+    private void remove(Map<JsonPath, JsonPath> duplicates) {
+        for (Map.Entry<JsonPath, JsonPath> duplicate : duplicates.entrySet()) {
+            JsonPath path = duplicate.getKey();
+            ((ObjectNode) own(path.getParent())).remove(path.getLastKey());
+            mapping.move(path, duplicate.getValue());
+            hashes.remove(path);
+        }
+    }
+
+    private JsonNode get(JsonPath path) {
+        JsonNode current = root;
+        for (String key : path) {
+            current = Util.get(current, key);
+            if (current == null) {
+                return null;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Returns the node at the path, copying it and its parents first unless
+     * deduplicating in place.
+     */
+    private JsonNode own(JsonPath path) {
+        root = own(root);
+        JsonNode current = root;
+        for (String key : path) {
+            JsonNode child = own(Util.get(current, key));
+            Util.set(current, key, child);
+            current = child;
+        }
+        return current;
+    }
+
+    private JsonNode own(JsonNode node) {
+        if (inPlace || owned.contains(node)) {
+            return node;
+        }
+        JsonNode copy;
+        if (node.isObject()) {
+            copy = ((ObjectNode) node).objectNode().setAll((ObjectNode) node);
+        } else {
+            copy = ((ArrayNode) node).arrayNode().addAll((ArrayNode) node);
+        }
+        owned.add(copy);
+        return copy;
+    }
+}
@@ -7,13 +7,16 @@ package com.xliic.openapi.bundler;
 
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
 public class Document {
     public final Part root;
     Parts parts = new Parts();
+    // parts being loaded, either by the crawl or by a Prefetcher
+    ConcurrentHashMap<URI, CompletableFuture<Part>> loading = new ConcurrentHashMap<>();
     URI base;
 
     public Document(URI location, JsonNode root) {
@@ -71,7 +74,7 @@ public class Document {
     }
 
     @SuppressWarnings("serial")
-    public static class Parts extends HashMap<URI, Part> {
+    public static class Parts extends ConcurrentHashMap<URI, Part> {
 
     }
 }
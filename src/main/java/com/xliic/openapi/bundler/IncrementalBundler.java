@@ -0,0 +1,184 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.NoSuchFileException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.xliic.common.WorkspaceException;
+
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
+/**
+ * Bundles a document repeatedly as its files change. update() re-reads only the
+ * changed files. When their $refs stay the same, the values which came from them
+ * are replaced in the previous bundle, found through its mapping, without
+ * crawling and remapping the document. Otherwise the document is bundled again,
+ * reusing the parsed files and the resolutions of the references which don't
+ * depend on the changed files.
+ *
+ * Bundling is never done in place, so that parsed files stay untouched and can
+ * be reused.
+ */
+public class IncrementalBundler {
+    private final Parser parser;
+    private final Serializer serializer;
+    private final Bundler.Options options;
+    private final URI root;
+    private final ResolutionCache cache = new ResolutionCache();
+    // changed files which have not been read yet
+    private final LinkedHashSet<URI> pending = new LinkedHashSet<>();
+    private Document document;
+    // last bundle and the inventory it was made from, null if bundling failed
+    private Bundle bundle;
+    private Inventory inventory;
+
+    public IncrementalBundler(Parser parser, Serializer serializer, URI root) {
+        this(parser, serializer, root, new Bundler.Options());
+    }
+
+    /**
+     * Options.setInPlace() is ignored, bundling is never done in place.
+     */
+    @SuppressFBWarnings("EI_EXPOSE_REP2")
+    public IncrementalBundler(Parser parser, Serializer serializer, URI root, Bundler.Options options) {
+        this.parser = parser;
+        this.serializer = serializer;
+        this.root = root;
+        this.options = new Bundler.Options();
+        this.options.setInPlace(false);
+        this.options.setPrefetchExecutor(options.getPrefetchExecutor());
+        this.options.setTreeShaking(options.isTreeShaking());
+        this.options.setDeduplication(options.isDeduplication());
+    }
+
+    /**
+     * Bundles the document, reading all of its files unless it has been bundled
+     * before.
+     */
+    public Bundle bundle() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            WorkspaceException, BundlingException {
+        if (document == null) {
+            document = parser.parse(root);
+        }
+        bundle = null;
+        inventory = null;
+        Bundler bundler = new Bundler(parser, serializer, options, cache);
+        Mapping mapping = bundler.bundle(document);
+        bundle = new Bundle(root, bundler.getBundled(), mapping);
+        inventory = bundler.getInventory();
+        return bundle;
+    }
+
+    /**
+     * Re-reads the changed files and updates the bundle. Changed files which are
+     * not part of the document are ignored, unless the document failed to load
+     * them before.
+     *
+     * If reading one of the files fails, none of the changes are applied: they
+     * are applied, along with new ones, on the next call.
+     */
+    public Bundle update(Collection<URI> changed) throws JsonProcessingException, IOException, URISyntaxException,
+            InterruptedException, WorkspaceException, BundlingException {
+        if (document == null) {
+            return bundle();
+        }
+
+        pending.addAll(changed);
+        HashMap<URI, JsonNode> nodes = new HashMap<>();
+        HashSet<URI> removed = new HashSet<>();
+        for (URI uri : pending) {
+            if (document.parts.containsKey(uri)) {
+                try {
+                    nodes.put(uri, parser.readTree(uri));
+                } catch (NoSuchFileException | FileNotFoundException e) {
+                    if (uri.equals(root)) {
+                        throw e;
+                    }
+                    // deleted, reported as a resolution failure by the crawl
+                    removed.add(uri);
+                }
+            } else if (document.loading.containsKey(uri)) {
+                // failed to load, try again on the next crawl
+                removed.add(uri);
+            }
+        }
+
+        if (nodes.containsKey(root)) {
+            document = replaceRoot(nodes.get(root), removed);
+            cache.clear();
+        } else {
+            JsonNode patched = null;
+            if (bundle != null && removed.isEmpty() && !options.isDeduplication()) {
+                // duplicates are found by content, leave them to the deduplicator
+                HashMap<Document.Part, JsonNode> parts = new HashMap<>();
+                for (Map.Entry<URI, JsonNode> entry : nodes.entrySet()) {
+                    parts.put(document.parts.get(entry.getKey()), entry.getValue());
+                }
+                patched = BundlePatcher.patch(bundle, inventory, parts);
+            }
+            for (URI uri : removed) {
+                document.parts.remove(uri);
+                document.loading.remove(uri);
+            }
+            for (Map.Entry<URI, JsonNode> entry : nodes.entrySet()) {
+                Document.Part part = document.createPart(entry.getKey(), entry.getValue());
+                document.loading.put(entry.getKey(), CompletableFuture.completedFuture(part));
+            }
+            cache.invalidate(pending);
+            if (patched != null) {
+                pending.clear();
+                bundle = new Bundle(root, patched, bundle.mapping);
+                return bundle;
+            }
+        }
+        pending.clear();
+
+        return bundle();
+    }
+
+    private Document replaceRoot(JsonNode node, Set<URI> removed) {
+        Document replaced = new Document(root, node);
+        for (Document.Part part : document.parts.values()) {
+            if (!part.location.equals(root) && !removed.contains(part.location)) {
+                Document.Part copy = replaced.createPart(part.location, part.node);
+                replaced.loading.put(part.location, CompletableFuture.completedFuture(copy));
+            }
+        }
+        return replaced;
+    }
+
+    /**
+     * Returns the files read while bundling, along with files the document refers
+     * to but which failed to load.
+     */
+    public Set<URI> getFiles() {
+        LinkedHashSet<URI> files = new LinkedHashSet<>();
+        files.add(root);
+        if (document != null) {
+            files.addAll(document.parts.keySet());
+            files.addAll(document.loading.keySet());
+        }
+        return files;
+    }
+
+    @SuppressFBWarnings("EI_EXPOSE_REP")
+    public ResolutionCache getResolutionCache() {
+        return cache;
+    }
+}
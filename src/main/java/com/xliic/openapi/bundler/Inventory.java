@@ -9,8 +9,13 @@ import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
@@ -18,7 +23,12 @@ import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 
 public class Inventory implements Iterable<Inventory.Entry> {
 
-    ArrayList<Inventory.Entry> inventory = new ArrayList<Inventory.Entry>();
+    // entries indexed by the location of the $ref node, in insertion order
+    private LinkedHashMap<Slot, Entry> entries = new LinkedHashMap<>();
+    // ids of resolved files, in the order they were first seen
+    private HashMap<URI, Integer> files = new HashMap<>();
+    // entries grouped by the resolved file id and the JSON pointer within it
+    private ArrayList<LinkedHashMap<JsonPointer, Target>> targets = new ArrayList<>();
 
     public void add(JsonNode parent, String key, JsonPath pathFromRoot, Reference reference)
             throws UnsupportedEncodingException {
@@ -27,49 +37,117 @@ public class Inventory implements Iterable<Inventory.Entry> {
                 reference.getResolvedFileURI(), reference.getResolvedPointer(), reference.resolvedPath,
                 reference.indirections, reference.circular, reference.resolvedPart);
 
-        Entry existingEntryToRemove = null;
-        for (Entry existing : inventory) {
-            if (existing.parent == entry.parent && existing.key.equals(entry.key)) {
-                if (existing.depth > entry.depth || existing.indirections > entry.indirections) {
-                    existingEntryToRemove = entry;
-                    break;
-                } else {
-                    return;
-                }
+        Slot slot = new Slot(parent, key);
+        Entry existing = entries.get(slot);
+        if (existing != null) {
+            if (existing.depth > entry.depth || existing.indirections > entry.indirections) {
+                entries.remove(slot);
+                getTarget(existing.file, existing.pointer).entries.remove(existing);
+            } else {
+                return;
             }
         }
 
-        if (existingEntryToRemove != null) {
-            inventory.remove(existingEntryToRemove);
-        }
+        entries.put(slot, entry);
+        getTarget(entry.file, entry.pointer).entries.add(entry);
+    }
+
+    public Entry get(JsonNode parent, String key) {
+        return entries.get(new Slot(parent, key));
+    }
 
-        inventory.add(entry);
+    public List<Entry> get(URI file, JsonPointer pointer) {
+        Integer id = files.get(file);
+        if (id != null && targets.get(id).containsKey(pointer)) {
+            return Collections.unmodifiableList(targets.get(id).get(pointer).entries);
+        }
+        return Collections.emptyList();
     }
 
     @Override
     public Iterator<Inventory.Entry> iterator() {
-        return inventory.iterator();
+        return Collections.unmodifiableCollection(entries.values()).iterator();
     }
 
     public int size() {
-        return inventory.size();
+        return entries.size();
     }
 
     public void sort() {
-        inventory.sort(new EntryComparator());
+        List<Entry> sorted = new ArrayList<>(entries.size());
+        for (Target target : getTargets()) {
+            sorted.addAll(target.entries);
+        }
+
+        LinkedHashMap<Slot, Entry> reordered = new LinkedHashMap<>();
+        for (Entry entry : sorted) {
+            reordered.put(new Slot(entry.parent, entry.key), entry);
+        }
+        entries = reordered;
+    }
+
+    /**
+     * Returns entries grouped by their target, ordered the same way as sort()
+     * orders individual entries. Targets are ordered by file id, then by the depth
+     * of their pointer, so that a target always comes before the targets pointing
+     * inside of it, then in the order they were first seen. This is done by
+     * bucketing rather than comparing, only entries within each target are sorted.
+     */
+    List<Target> getTargets() {
+        List<Target> sorted = new ArrayList<>();
+        ArrayList<ArrayList<Target>> depths = new ArrayList<>();
+        for (LinkedHashMap<JsonPointer, Target> pointers : targets) {
+            for (Target target : pointers.values()) {
+                if (!target.entries.isEmpty()) {
+                    target.entries.sort(new EntryComparator());
+                    while (depths.size() <= target.depth) {
+                        depths.add(new ArrayList<>());
+                    }
+                    depths.get(target.depth).add(target);
+                }
+            }
+            for (ArrayList<Target> depth : depths) {
+                sorted.addAll(depth);
+                depth.clear();
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * Returns the targets in the given file, in the order they were first seen.
+     */
+    Collection<Target> getTargets(URI file) {
+        Integer id = files.get(file);
+        return id == null ? Collections.emptyList() : Collections.unmodifiableCollection(targets.get(id).values());
+    }
+
+    private Target getTarget(URI file, JsonPointer pointer) {
+        Integer id = files.get(file);
+        if (id == null) {
+            id = targets.size();
+            files.put(file, id);
+            targets.add(new LinkedHashMap<>());
+        }
+        LinkedHashMap<JsonPointer, Target> pointers = targets.get(id);
+        Target target = pointers.get(pointer);
+        if (target == null) {
+            target = new Target(file, id, pointer);
+            pointers.put(pointer, target);
+        }
+        return target;
     }
 
+    /**
+     * Orders entries of the same target.
+     */
     static class EntryComparator implements Comparator<Entry>, Serializable {
 
         private static final long serialVersionUID = 1L;
 
         @Override
         public int compare(Entry a, Entry b) {
-            if (!a.file.equals(b.file)) {
-                return a.file.compareTo(b.file);
-            } else if (!a.pointer.equals(b.pointer)) {
-                return a.pointer.compareTo(b.pointer);
-            } else if (a.indirections != b.indirections) {
+            if (a.indirections != b.indirections) {
                 // TODO test that lower indirections come first
                 return Integer.compare(a.indirections, b.indirections);
             } else if (a.circular != b.circular) {
@@ -89,6 +167,49 @@ public class Inventory implements Iterable<Inventory.Entry> {
 
     }
 
+    /**
+     * Location of a $ref node: its parent container, compared by identity, and the
+     * key of the $ref within it.
+     */
+    private static final class Slot {
+        final JsonNode parent;
+        final String key;
+
+        Slot(JsonNode parent, String key) {
+            this.parent = parent;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof Slot) {
+                Slot other = (Slot) o;
+                return parent == other.parent && (key == null ? other.key == null : key.equals(other.key));
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(parent) + (key == null ? 0 : key.hashCode());
+        }
+    }
+
+    static class Target {
+        final URI file;
+        final int fileId;
+        final JsonPointer pointer;
+        final int depth;
+        final ArrayList<Entry> entries = new ArrayList<>(1);
+
+        Target(URI file, int fileId, JsonPointer pointer) {
+            this.file = file;
+            this.fileId = fileId;
+            this.pointer = pointer;
+            this.depth = pointer.getJsonPath().size();
+        }
+    }
+
     @SuppressFBWarnings("EI_EXPOSE_REP2")
     public static class Entry {
         Document.Part part;
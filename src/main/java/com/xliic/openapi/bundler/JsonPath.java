@@ -5,52 +5,197 @@
 
 package com.xliic.openapi.bundler;
 
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 
-@SuppressWarnings("serial")
-public class JsonPath extends ArrayList<String> {
-    public JsonPath(String... keys) {
-        super();
-        for (String key : keys) {
-            add(key);
+/**
+ * Immutable path of keys in a JSON document. Each path links to its parent, so
+ * extending a path is O(1) and paths extended from the same prefix share it.
+ * The hash code is computed as paths are built, the pointer and the list of
+ * keys used for indexed access on first use.
+ */
+public final class JsonPath extends AbstractList<String> {
+    // shared strings for array indexes, which make up a large part of the keys
+    private static final String[] INDEXES = new String[1024];
+
+    static {
+        for (int i = 0; i < INDEXES.length; i++) {
+            INDEXES[i] = Integer.toString(i);
         }
     }
 
+    private final JsonPath parent;
+    private final String key;
+    private final int size;
+    private final int hash;
+    private JsonPointer pointer;
+    // unmodifiable list over an array of the keys, its final fields make it safe
+    // to publish without synchronization
+    private List<String> keys;
+
+    public JsonPath(String... keys) {
+        this(Arrays.asList(keys));
+    }
+
     public JsonPath(List<String> keys) {
-        super(keys);
+        this(build(keys));
     }
 
     public JsonPath(JsonPath path) {
-        super(path);
+        this(path.parent, path.key);
     }
 
-    JsonPath withKeys(List<String> keys) {
-        JsonPath copy = new JsonPath(this);
-        copy.addAll(keys);
-        return copy;
+    private JsonPath(JsonPath parent, String key) {
+        this.parent = parent;
+        this.key = key;
+        if (parent == null) {
+            this.size = 0;
+            this.hash = 1;
+        } else {
+            this.size = parent.size + 1;
+            this.hash = 31 * parent.hash + key.hashCode();
+        }
+    }
+
+    private static JsonPath build(List<String> keys) {
+        JsonPath path = new JsonPath((JsonPath) null, null);
+        for (String key : keys) {
+            path = new JsonPath(path, key);
+        }
+        return path;
+    }
+
+    static String index(int index) {
+        return index < INDEXES.length ? INDEXES[index] : Integer.toString(index);
     }
 
     JsonPath withKey(String key) {
-        JsonPath copy = new JsonPath(this);
-        copy.add(key);
-        return copy;
+        if (key == null) {
+            throw new IllegalArgumentException("Json path key can't be null");
+        }
+        return new JsonPath(this, key);
+    }
+
+    JsonPath withKeys(List<String> keys) {
+        JsonPath path = this;
+        for (String key : keys) {
+            path = path.withKey(key);
+        }
+        return path;
+    }
+
+    /**
+     * Returns the path without its last key, or null for the empty path.
+     */
+    JsonPath getParent() {
+        return parent;
+    }
+
+    /**
+     * Returns the last key of the path, or null for the empty path.
+     */
+    String getLastKey() {
+        return key;
     }
 
     public JsonPointer toPointer() {
-        return JsonPointer.fromJsonPath(this);
+        if (pointer == null) {
+            pointer = JsonPointer.fromKeys(copyKeys());
+        }
+        return pointer;
+    }
+
+    private List<String> keys() {
+        List<String> result = keys;
+        if (result == null) {
+            result = Collections.unmodifiableList(Arrays.asList(copyKeys()));
+            keys = result;
+        }
+        return result;
+    }
+
+    private String[] copyKeys() {
+        String[] result = new String[size];
+        JsonPath current = this;
+        for (int i = size - 1; i >= 0; i--) {
+            result[i] = current.key;
+            current = current.parent;
+        }
+        return result;
     }
 
     public boolean isSubPathOf(JsonPath path) {
-        if (path.size() > this.size()) {
+        if (path.size > this.size) {
             return false;
         }
 
-        for (int i = 0; i < path.size(); i++) {
-            if (!path.get(i).equals(this.get(i))) {
+        JsonPath current = this;
+        while (current.size > path.size) {
+            current = current.parent;
+        }
+        return current.equals(path);
+    }
+
+    @Override
+    public String get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        if (index == size - 1) {
+            return key;
+        }
+        return keys().get(index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public String[] toArray() {
+        return keys().toArray(new String[size]);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return keys().iterator();
+    }
+
+    /**
+     * Returns an unmodifiable view of the keys between the two indexes.
+     */
+    @Override
+    public List<String> subList(int fromIndex, int toIndex) {
+        return keys().subList(fromIndex, toIndex);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof JsonPath)) {
+            return super.equals(o);
+        }
+        JsonPath a = this;
+        JsonPath b = (JsonPath) o;
+        if (a.size != b.size || a.hash != b.hash) {
+            return false;
+        }
+        // stops at the first shared parent
+        while (a != b && a.size > 0) {
+            if (!a.key.equals(b.key)) {
                 return false;
             }
+            a = a.parent;
+            b = b.parent;
         }
         return true;
     }
-}
\ No newline at end of file
+}
@@ -2,11 +2,12 @@ package com.xliic.openapi.bundler;
 
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
 
 public final class JsonPointer implements Comparable<JsonPointer> {
 
     private final String pointer;
+    // parsed on first use
+    private JsonPath path;
 
     public JsonPointer(String pointer) {
         if (pointer == null) {
@@ -36,39 +37,62 @@ public final class JsonPointer implements Comparable<JsonPointer> {
     }
 
     static JsonPath toJsonPath(JsonPointer pointer) {
-        JsonPath result = new JsonPath();
-
-        if (pointer == null || pointer.getValue() == null || pointer.getValue().equals("")) {
+        if (pointer == null) {
             // return empty path
-            return result;
-        } else if (pointer.getValue().equals("/")) {
-            // return path to "" key
-            return result.withKey("");
+            return new JsonPath();
         }
+        if (pointer.path == null) {
+            pointer.path = parse(pointer.pointer);
+        }
+        return pointer.path;
+    }
 
-        for (String segment : pointer.getValue().split("/")) {
-            result.add(segment.replace("~1", "/").replace("~0", "~"));
+    private static JsonPath parse(String pointer) {
+        JsonPath result = new JsonPath();
+        if (pointer.indexOf('/') == -1) {
+            return result;
         }
 
-        // remove "" from the result of split
-        result.remove(0);
+        // segments follow each "/", including a leading one
+        int start = pointer.indexOf('/') + 1;
+        while (true) {
+            int end = pointer.indexOf('/', start);
+            String segment = end == -1 ? pointer.substring(start) : pointer.substring(start, end);
+            result = result.withKey(unescape(segment));
+            if (end == -1) {
+                return result;
+            }
+            start = end + 1;
+        }
+    }
 
-        return result;
+    private static String unescape(String segment) {
+        if (segment.indexOf('~') == -1) {
+            return segment;
+        }
+        return segment.replace("~1", "/").replace("~0", "~");
     }
 
     public static JsonPointer fromJsonPath(JsonPath path) {
-        if (path.size() == 0) {
+        return path.toPointer();
+    }
+
+    static JsonPointer fromKeys(String[] keys) {
+        if (keys.length == 0) {
             // empty JsonPointer, refers the entire document - return ""
             return new JsonPointer("");
         }
 
-        ArrayList<String> result = new ArrayList<String>();
-        for (String key : path) {
-            String escaped = key.replace("~", "~0").replace("/", "~1");
-            result.add(escaped);
+        StringBuilder result = new StringBuilder();
+        for (String key : keys) {
+            result.append('/');
+            if (key.indexOf('~') == -1 && key.indexOf('/') == -1) {
+                result.append(key);
+            } else {
+                result.append(key.replace("~", "~0").replace("/", "~1"));
+            }
         }
-
-        return new JsonPointer("/" + String.join("/", result));
+        return new JsonPointer(result.toString());
     }
 
     @Override
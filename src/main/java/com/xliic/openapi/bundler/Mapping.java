@@ -2,19 +2,32 @@ package com.xliic.openapi.bundler;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 
 public class Mapping {
     Location value = null;
     HashMap<String, Mapping> children = new HashMap<>();
+    // paths in the bundled document by the location they come from, only kept
+    // by the root of the mapping
+    private HashMap<URI, PathTrie<ArrayList<JsonPath>>> sources;
+    // locations moved onto another value by move(), by the path of that value,
+    // they are only in the reverse index
+    private HashMap<JsonPath, ArrayList<Mapped>> moved;
 
     public Location find(String pointer) throws UnsupportedEncodingException {
         Mapping current = this;
-        JsonPath path = new JsonPointer(pointer).getJsonPath();
+        String[] path = new JsonPointer(pointer).getJsonPath().toArray();
 
         int i = 0;
-        for (; i < path.size() && current.children.containsKey(path.get(i)); i++) {
-            current = current.children.get(path.get(i));
+        for (; i < path.length && current.children.containsKey(path[i]); i++) {
+            current = current.children.get(path[i]);
         }
 
         Location value = current.value;
@@ -24,14 +37,209 @@ public class Mapping {
             return null;
         }
 
-        if (i < path.size()) {
-            JsonPath remaining = new JsonPath(path.subList(i, path.size()));
+        if (i < path.length) {
+            JsonPath remaining = new JsonPath(Arrays.asList(path).subList(i, path.length));
             return new Location(value.uri, value.pointer + remaining.toPointer());
         }
 
         return value;
     }
 
+    /**
+     * Returns the pointers in the bundled document affected by a change at the
+     * location: those of values containing the location, and of values coming
+     * from inside of it. The uri is relative to the root document, as in the
+     * locations returned by find(). Locations in the root document are at the
+     * same pointers in the bundled document, unless inlined from other files, and
+     * are not returned.
+     */
+    public List<String> findBundled(URI uri, String pointer) {
+        ArrayList<String> result = new ArrayList<>();
+        PathTrie<ArrayList<JsonPath>> paths = sources == null ? null : sources.get(uri);
+        if (paths == null) {
+            return result;
+        }
+
+        JsonPath path = new JsonPointer(pointer).getJsonPath();
+        for (PathTrie.Match<ArrayList<JsonPath>> match : paths.findPrefixes(path)) {
+            List<String> tail = path.subList(match.length, path.size());
+            for (JsonPath bundled : match.value) {
+                result.add(bundled.withKeys(tail).toPointer().getValue());
+            }
+        }
+        for (ArrayList<JsonPath> below : paths.findBelow(path)) {
+            for (JsonPath bundled : below) {
+                result.add(bundled.toPointer().getValue());
+            }
+        }
+        return result;
+    }
+
+    void insert(JsonPath path, Location location) {
+        Mapping current = this;
+        for (String key : path) {
+            Mapping child = current.children.get(key);
+            if (child == null) {
+                child = new Mapping();
+                current.children.put(key, child);
+            }
+            current = child;
+        }
+        if (current.value != null) {
+            unindex(path, current.value);
+        }
+        current.value = location;
+        index(path, location);
+    }
+
+    private void index(JsonPath path, Location location) {
+        if (sources == null) {
+            sources = new HashMap<>();
+        }
+        PathTrie<ArrayList<JsonPath>> paths = sources.get(location.uri);
+        if (paths == null) {
+            paths = new PathTrie<>();
+            sources.put(location.uri, paths);
+        }
+        JsonPath source = new JsonPointer(location.pointer).getJsonPath();
+        ArrayList<JsonPath> bundled = paths.get(source);
+        if (bundled == null) {
+            bundled = new ArrayList<>(1);
+            paths.put(source, bundled);
+        }
+        bundled.add(path);
+    }
+
+    /**
+     * Removes the mappings of the value at the path and of everything inside of
+     * it.
+     */
+    void remove(JsonPath path) {
+        for (Mapped entry : removeMoved(path)) {
+            unindex(entry.path, entry.location);
+        }
+        for (Mapped entry : removeTree(path)) {
+            unindex(entry.path, entry.location);
+        }
+    }
+
+    /**
+     * Removes the mappings of the value at the path, which was merged into an
+     * identical value at the other path. The locations it came from are mapped to
+     * the other value by findBundled(), while find() keeps returning the
+     * locations the other value came from.
+     */
+    void move(JsonPath from, JsonPath to) {
+        ArrayList<Mapped> entries = removeMoved(from);
+        entries.addAll(removeTree(from));
+        if (entries.isEmpty()) {
+            return;
+        }
+        for (Mapped entry : entries) {
+            unindex(entry.path, entry.location);
+            insertMoved(to, to.withKeys(entry.path.subList(from.size(), entry.path.size())), entry.location);
+        }
+    }
+
+    /**
+     * Maps the location to a path within the value at target, for findBundled()
+     * only.
+     */
+    void insertMoved(JsonPath target, JsonPath path, Location location) {
+        if (moved == null) {
+            moved = new HashMap<>();
+        }
+        moved.computeIfAbsent(target, key -> new ArrayList<>()).add(new Mapped(path, location));
+        index(path, location);
+    }
+
+    /**
+     * Returns the locations moved by move(), by the path of the value they were
+     * moved onto.
+     */
+    Map<JsonPath, ArrayList<Mapped>> getMoved() {
+        return moved == null ? Collections.emptyMap() : Collections.unmodifiableMap(moved);
+    }
+
+    private ArrayList<Mapped> removeMoved(JsonPath path) {
+        ArrayList<Mapped> result = new ArrayList<>();
+        if (moved != null) {
+            Iterator<Map.Entry<JsonPath, ArrayList<Mapped>>> entries = moved.entrySet().iterator();
+            while (entries.hasNext()) {
+                Map.Entry<JsonPath, ArrayList<Mapped>> entry = entries.next();
+                if (entry.getKey().isSubPathOf(path)) {
+                    result.addAll(entry.getValue());
+                    entries.remove();
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes the mappings below the path from the tree, returning them without
+     * unindexing them.
+     */
+    private ArrayList<Mapped> removeTree(JsonPath path) {
+        ArrayList<Mapped> result = new ArrayList<>();
+        if (path.isEmpty()) {
+            return result;
+        }
+        Mapping parent = this;
+        for (String key : path.getParent()) {
+            parent = parent.children.get(key);
+            if (parent == null) {
+                return result;
+            }
+        }
+        Mapping removed = parent.children.remove(path.getLastKey());
+        if (removed == null) {
+            return result;
+        }
+
+        ArrayDeque<Mapping> nodes = new ArrayDeque<>();
+        ArrayDeque<JsonPath> paths = new ArrayDeque<>();
+        nodes.push(removed);
+        paths.push(path);
+        while (!nodes.isEmpty()) {
+            Mapping node = nodes.pop();
+            JsonPath nodePath = paths.pop();
+            if (node.value != null) {
+                result.add(new Mapped(nodePath, node.value));
+            }
+            for (Map.Entry<String, Mapping> child : node.children.entrySet()) {
+                nodes.push(child.getValue());
+                paths.push(nodePath.withKey(child.getKey()));
+            }
+        }
+        return result;
+    }
+
+    private void unindex(JsonPath path, Location location) {
+        PathTrie<ArrayList<JsonPath>> paths = sources == null ? null : sources.get(location.uri);
+        if (paths == null) {
+            return;
+        }
+        JsonPath source = new JsonPointer(location.pointer).getJsonPath();
+        ArrayList<JsonPath> bundled = paths.get(source);
+        if (bundled != null && bundled.remove(path) && bundled.isEmpty()) {
+            paths.remove(source);
+            if (paths.isEmpty()) {
+                sources.remove(location.uri);
+            }
+        }
+    }
+
+    static class Mapped {
+        final JsonPath path;
+        final Location location;
+
+        Mapped(JsonPath path, Location location) {
+            this.path = path;
+            this.location = location;
+        }
+    }
+
     public static class Location {
         public final URI uri;
         public final String pointer;
@@ -6,18 +6,27 @@
 package com.xliic.openapi.bundler;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.StreamReadConstraints;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactoryBuilder;
 
 import org.yaml.snakeyaml.LoaderOptions;
 
+import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
+
 import com.xliic.common.ContentType;
 import com.xliic.common.Workspace;
 import com.xliic.common.WorkspaceContent;
@@ -28,12 +37,24 @@ public class Parser {
     private ObjectMapper yamlMapper;
     private Workspace workspace;
 
+    private PartCache partCache;
+    private TreeCache treeCache;
+    private BundlerListener listener;
+
     public static class Options {
         private int maxYamlCodepoints;
+        private int maxNestingDepth;
+        private PartCache partCache;
+        private TreeCache treeCache;
+        private BundlerListener listener;
 
         public Options() {
             // Default to 20MB or more (limit is in code points)
             this.maxYamlCodepoints = 20 * 1024 * 1024;
+            this.maxNestingDepth = StreamReadConstraints.DEFAULT_MAX_DEPTH;
+            this.partCache = null;
+            this.treeCache = null;
+            this.listener = BundlerListener.NONE;
         }
 
         public int getMaxYamlCodepoints() {
@@ -43,6 +64,58 @@ public class Parser {
         public void setMaxYamlCodepoints(int maxYamlCodepoints) {
             this.maxYamlCodepoints = maxYamlCodepoints;
         }
+
+        public int getMaxNestingDepth() {
+            return maxNestingDepth;
+        }
+
+        /**
+         * Sets the maximum nesting of objects and arrays in JSON and YAML files,
+         * 1000 by default. The crawl handles any depth, raise the limit of the
+         * Serializer as well to bundle deeper documents.
+         */
+        public void setMaxNestingDepth(int maxNestingDepth) {
+            this.maxNestingDepth = maxNestingDepth;
+        }
+
+        @SuppressFBWarnings("EI_EXPOSE_REP")
+        public PartCache getPartCache() {
+            return partCache;
+        }
+
+        /**
+         * Sets a cache of parsed files, which can be shared between Parsers.
+         */
+        @SuppressFBWarnings("EI_EXPOSE_REP2")
+        public void setPartCache(PartCache partCache) {
+            this.partCache = partCache;
+        }
+
+        @SuppressFBWarnings("EI_EXPOSE_REP")
+        public TreeCache getTreeCache() {
+            return treeCache;
+        }
+
+        /**
+         * Sets an on-disk cache of parsed files, used when a file was not found in
+         * the PartCache.
+         */
+        @SuppressFBWarnings("EI_EXPOSE_REP2")
+        public void setTreeCache(TreeCache treeCache) {
+            this.treeCache = treeCache;
+        }
+
+        public BundlerListener getListener() {
+            return listener;
+        }
+
+        /**
+         * Sets the listener notified by this Parser and by Bundlers and Resolvers
+         * using it.
+         */
+        public void setListener(BundlerListener listener) {
+            this.listener = listener == null ? BundlerListener.NONE : listener;
+        }
     }
 
     public Parser(Workspace workspace) {
@@ -53,14 +126,21 @@ public class Parser {
 
         LoaderOptions loaderOptions = new LoaderOptions();
         loaderOptions.setCodePointLimit(options.getMaxYamlCodepoints());
+        loaderOptions.setNestingDepthLimit(options.getMaxNestingDepth());
+        StreamReadConstraints constraints = StreamReadConstraints.builder()
+                .maxNestingDepth(options.getMaxNestingDepth()).build();
 
         YAMLFactoryBuilder builder = YAMLFactory.builder();
         builder.loaderOptions(loaderOptions);
+        builder.streamReadConstraints(constraints);
         YAMLFactory yamlFactory = builder.build();
 
-        this.jsonMapper = new ObjectMapper();
+        this.jsonMapper = new ObjectMapper(JsonFactory.builder().streamReadConstraints(constraints).build());
         this.yamlMapper = new ObjectMapper(yamlFactory);
         this.workspace = workspace;
+        this.partCache = options.getPartCache();
+        this.treeCache = options.getTreeCache();
+        this.listener = options.getListener();
     }
 
     public Document parse(URI uri)
@@ -72,12 +152,93 @@ public class Parser {
 
     public JsonNode readTree(URI uri) throws JsonMappingException, JsonProcessingException, IOException,
             InterruptedException, WorkspaceException {
-        WorkspaceContent content = workspace.read(uri);
+        if (listener == BundlerListener.NONE) {
+            WorkspaceContent content = workspace.read(uri);
+            return isCached(content) ? readCachedTree(uri, content.buffered()) : readTree(uri, content);
+        }
+        listener.loadStarted(uri);
+        try {
+            long start = System.nanoTime();
+            WorkspaceContent content = workspace.read(uri);
+            boolean cached = isCached(content);
+            if (cached) {
+                content = content.buffered();
+            }
+            long read = System.nanoTime();
+            JsonNode root = cached ? readCachedTree(uri, content) : readTree(uri, content);
+            listener.loadFinished(uri, content.size(), read - start, System.nanoTime() - read);
+            return root;
+        } catch (IOException | InterruptedException | WorkspaceException | RuntimeException e) {
+            listener.loadFailed(uri, e);
+            throw e;
+        }
+    }
+
+    BundlerListener getListener() {
+        return listener;
+    }
+
+    private boolean isCached(WorkspaceContent content) {
+        return partCache != null || (treeCache != null && treeCache.accepts(content));
+    }
+
+    private JsonNode readCachedTree(URI uri, WorkspaceContent content)
+            throws JsonMappingException, JsonProcessingException, IOException, WorkspaceException {
+        String fingerprint = PartCache.fingerprint(content);
+        if (partCache != null) {
+            JsonNode cached = partCache.get(uri, fingerprint);
+            if (cached != null) {
+                listener.partCacheHit(uri);
+                return cached;
+            }
+            listener.partCacheMiss(uri);
+        }
+
+        boolean stored = treeCache != null && treeCache.accepts(content);
+        JsonNode root = stored ? treeCache.get(uri, fingerprint) : null;
+        if (root == null) {
+            root = readTree(uri, content);
+            if (stored) {
+                treeCache.put(uri, fingerprint, root);
+            }
+        }
+        if (partCache != null) {
+            partCache.put(uri, fingerprint, root, content.size());
+        }
+        return root;
+    }
+
+    private JsonNode readTree(URI uri, WorkspaceContent content)
+            throws JsonMappingException, JsonProcessingException, IOException, WorkspaceException {
+        ObjectMapper mapper;
         if (content.type == ContentType.JSON) {
-            return jsonMapper.readTree(content.data);
+            mapper = jsonMapper;
         } else if (content.type == ContentType.YAML) {
-            return yamlMapper.readTree(content.data);
+            mapper = yamlMapper;
+        } else {
+            if (content.getStream() != null) {
+                content.getStream().close();
+            }
+            throw new WorkspaceException(String.format("Unknown content type", uri));
+        }
+
+        if (content.isText()) {
+            return mapper.readTree(content.getText());
+        }
+
+        // byte contents go straight to the byte based parsers, which
+        // decode UTF-8 themselves
+        boolean utf8 = content.getCharset().equals(StandardCharsets.UTF_8);
+        ByteBuffer buffer = content.getBuffer();
+        if (buffer != null && buffer.hasArray() && utf8) {
+            return mapper.readTree(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        }
+
+        try (InputStream stream = buffer != null ? new ByteBufferBackedInputStream(buffer) : content.getStream()) {
+            if (utf8) {
+                return mapper.readTree(stream);
+            }
+            return mapper.readTree(new InputStreamReader(stream, content.getCharset()));
         }
-        throw new WorkspaceException(String.format("Unknown content type", uri));
     }
-}
\ No newline at end of file
+}
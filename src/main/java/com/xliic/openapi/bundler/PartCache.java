@@ -0,0 +1,151 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.xliic.common.WorkspaceContent;
+
+/**
+ * Parsed files shared between Parsers, so that files used by many documents are
+ * parsed once. Entries are keyed by URI and checked against a fingerprint of
+ * the file contents, least recently used entries are evicted once the total
+ * size of the cached files exceeds the limit.
+ *
+ * Bundler modifies the parsed trees by default, so the cache stores and hands
+ * out copies. If all the documents parsed with the cache are bundled with
+ * Bundler.Options.setInPlace(false), copying can be disabled and the cached
+ * trees are shared.
+ */
+public class PartCache {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final long maxSize;
+    private final boolean copying;
+    private final LinkedHashMap<URI, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * @param maxSize limit for the total size of the cached files, in characters
+     *                or bytes as returned by WorkspaceContent.size()
+     */
+    public PartCache(long maxSize) {
+        this(maxSize, true);
+    }
+
+    /**
+     * @param maxSize limit for the total size of the cached files, in characters
+     *                or bytes as returned by WorkspaceContent.size()
+     * @param copying whether to store and hand out copies of the parsed trees
+     */
+    public PartCache(long maxSize, boolean copying) {
+        this.maxSize = maxSize;
+        this.copying = copying;
+    }
+
+    public synchronized JsonNode get(URI uri, String fingerprint) {
+        Entry entry = entries.get(uri);
+        if (entry != null && entry.fingerprint.equals(fingerprint)) {
+            hits++;
+            return copying ? entry.node.deepCopy() : entry.node;
+        }
+        misses++;
+        return null;
+    }
+
+    public synchronized void put(URI uri, String fingerprint, JsonNode node, long nodeSize) {
+        Entry previous = entries.remove(uri);
+        if (previous != null) {
+            size -= previous.size;
+        }
+
+        if (nodeSize > maxSize) {
+            return;
+        }
+
+        entries.put(uri, new Entry(fingerprint, copying ? node.deepCopy() : node, nodeSize));
+        size += nodeSize;
+
+        Iterator<Map.Entry<URI, Entry>> eldest = entries.entrySet().iterator();
+        while (size > maxSize && eldest.hasNext()) {
+            size -= eldest.next().getValue().size;
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Returns the fingerprint of text or byte contents, stream contents must be
+     * buffered first.
+     */
+    static String fingerprint(WorkspaceContent content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            if (content.isText()) {
+                digest.update(content.getText().getBytes(StandardCharsets.UTF_8));
+            } else {
+                digest.update(content.getBuffer());
+            }
+            byte[] hash = digest.digest();
+            char[] result = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                result[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+                result[i * 2 + 1] = HEX[hash[i] & 0xF];
+            }
+            return new String(result);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        } catch (IOException e) {
+            // text contents are never decoded
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class Entry {
+        final String fingerprint;
+        final JsonNode node;
+        final long size;
+
+        Entry(String fingerprint, JsonNode node, long size) {
+            this.fingerprint = fingerprint;
+            this.node = node;
+            this.size = size;
+        }
+    }
+}
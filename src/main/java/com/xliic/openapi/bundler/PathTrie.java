@@ -0,0 +1,151 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Values keyed by paths, finding the value for the longest prefix of a path
+ * takes time proportional to the length of the path.
+ */
+class PathTrie<V> {
+    private final HashMap<String, PathTrie<V>> children = new HashMap<>();
+    private V value;
+
+    static class Match<V> {
+        final V value;
+        // number of keys of the matching prefix
+        final int length;
+
+        Match(V value, int length) {
+            this.value = value;
+            this.length = length;
+        }
+    }
+
+    void put(Iterable<String> path, V value) {
+        PathTrie<V> current = this;
+        for (String key : path) {
+            PathTrie<V> child = current.children.get(key);
+            if (child == null) {
+                child = new PathTrie<>();
+                current.children.put(key, child);
+            }
+            current = child;
+        }
+        current.value = value;
+    }
+
+    V get(Iterable<String> path) {
+        PathTrie<V> current = this;
+        for (String key : path) {
+            current = current.children.get(key);
+            if (current == null) {
+                return null;
+            }
+        }
+        return current.value;
+    }
+
+    /**
+     * Returns the value for the longest prefix of the path, including the path
+     * itself, or null if there is none.
+     */
+    Match<V> findPrefix(Iterable<String> path) {
+        PathTrie<V> current = this;
+        Match<V> match = current.value == null ? null : new Match<>(current.value, 0);
+        int length = 0;
+        for (String key : path) {
+            current = current.children.get(key);
+            if (current == null) {
+                break;
+            }
+            length++;
+            if (current.value != null) {
+                match = new Match<>(current.value, length);
+            }
+        }
+        return match;
+    }
+
+    /**
+     * Returns the values for all the prefixes of the path, including the path
+     * itself, shortest first.
+     */
+    List<Match<V>> findPrefixes(Iterable<String> path) {
+        ArrayList<Match<V>> matches = new ArrayList<>();
+        PathTrie<V> current = this;
+        int length = 0;
+        if (current.value != null) {
+            matches.add(new Match<>(current.value, 0));
+        }
+        for (String key : path) {
+            current = current.children.get(key);
+            if (current == null) {
+                break;
+            }
+            length++;
+            if (current.value != null) {
+                matches.add(new Match<>(current.value, length));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Returns the values for the paths the path is a strict prefix of.
+     */
+    List<V> findBelow(Iterable<String> path) {
+        ArrayList<V> values = new ArrayList<>();
+        PathTrie<V> current = this;
+        for (String key : path) {
+            current = current.children.get(key);
+            if (current == null) {
+                return values;
+            }
+        }
+        ArrayDeque<PathTrie<V>> stack = new ArrayDeque<>(current.children.values());
+        while (!stack.isEmpty()) {
+            PathTrie<V> node = stack.pop();
+            if (node.value != null) {
+                values.add(node.value);
+            }
+            stack.addAll(node.children.values());
+        }
+        return values;
+    }
+
+    /**
+     * Removes the value for the path, along with the nodes left empty.
+     */
+    void remove(List<String> path) {
+        ArrayList<PathTrie<V>> nodes = new ArrayList<>(path.size() + 1);
+        PathTrie<V> current = this;
+        nodes.add(current);
+        for (String key : path) {
+            current = current.children.get(key);
+            if (current == null) {
+                return;
+            }
+            nodes.add(current);
+        }
+        current.value = null;
+        for (int i = path.size(); i > 0; i--) {
+            PathTrie<V> node = nodes.get(i);
+            if (node.value != null || !node.children.isEmpty()) {
+                break;
+            }
+            nodes.get(i - 1).children.remove(path.get(i - 1));
+        }
+    }
+
+    boolean isEmpty() {
+        return value == null && children.isEmpty();
+    }
+}
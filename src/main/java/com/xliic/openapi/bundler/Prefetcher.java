@@ -0,0 +1,120 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.xliic.openapi.bundler.Document.Part;
+
+/**
+ * Loads external files referenced by a document ahead of the crawl. Each loaded
+ * part is scanned for external $refs and the files they point to are read and
+ * parsed on the executor, the crawl waits only for parts which are not loaded
+ * yet. Once the crawl is done, stop() cancels the tasks which haven't started
+ * and waits for the others, so that the document isn't modified afterwards.
+ */
+class Prefetcher {
+    private final Parser parser;
+    private final Executor executor;
+    private final Document document;
+    private final ConcurrentLinkedQueue<CompletableFuture<Void>> tasks = new ConcurrentLinkedQueue<>();
+    private volatile boolean stopped = false;
+
+    Prefetcher(Parser parser, Executor executor, Document document) {
+        this.parser = parser;
+        this.executor = executor;
+        this.document = document;
+    }
+
+    void prefetch(Part part) {
+        prefetch(part, part.node);
+    }
+
+    void prefetch(Part part, JsonNode node) {
+        ArrayDeque<JsonNode> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            JsonNode current = stack.pop();
+            if (Resolver.isExternalRef(current)) {
+                schedule(part, current.get("$ref").asText());
+            } else if (current.isContainerNode()) {
+                Iterator<JsonNode> elements = current.elements();
+                while (elements.hasNext()) {
+                    JsonNode element = elements.next();
+                    if (element.isContainerNode()) {
+                        stack.push(element);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops prefetching and waits for the files being loaded.
+     */
+    void stop() {
+        stopped = true;
+        // tasks scheduled by running ones are queued before these complete
+        CompletableFuture<Void> task;
+        while ((task = tasks.poll()) != null) {
+            task.join();
+        }
+    }
+
+    private void schedule(Part part, String ref) {
+        if (stopped) {
+            return;
+        }
+
+        URI location;
+        try {
+            location = Document.getTargetPartUri(part, new URI(ref));
+            if (document.getPart(location) != null) {
+                return;
+            }
+        } catch (URISyntaxException e) {
+            // broken $refs are reported by the crawl
+            return;
+        }
+
+        CompletableFuture<Part> loading = new CompletableFuture<>();
+        if (document.loading.putIfAbsent(location, loading) != null) {
+            return;
+        }
+
+        CompletableFuture<Void> task = new CompletableFuture<>();
+        tasks.add(task);
+        try {
+            executor.execute(() -> {
+                try {
+                    if (stopped) {
+                        // not needed by the crawl, which is over
+                        document.loading.remove(location, loading);
+                        return;
+                    }
+                    Resolver.loadPart(parser, document, location, loading);
+                    if (!loading.isCompletedExceptionally()) {
+                        prefetch(loading.join());
+                    }
+                } finally {
+                    task.complete(null);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // leave it to the crawl to load the part
+            document.loading.remove(location, loading);
+            task.complete(null);
+        }
+    }
+}
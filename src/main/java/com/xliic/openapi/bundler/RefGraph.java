@@ -0,0 +1,201 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+/**
+ * Graph of the locations met while bundling, the $refs and the values they
+ * resolve to. Locations are identified by int ids, assigned the first time they
+ * are seen.
+ *
+ * Edges go from a crawled value to the $refs found in it, and from a $ref to the
+ * value it resolves to. Once bundled, the graph is exposed as a ReferenceGraph,
+ * which finds the locations in cycles with findComponents().
+ */
+class RefGraph {
+    private final HashMap<URI, HashMap<JsonPointer, Integer>> ids = new HashMap<>();
+    private final ArrayList<URI> locations = new ArrayList<>();
+    private final ArrayList<JsonPointer> pointers = new ArrayList<>();
+    private int[] from = new int[16];
+    private int[] to = new int[16];
+    private int edges = 0;
+    // $refs on the chain of indirections being resolved
+    private final BitSet chain = new BitSet();
+    // values already crawled
+    private final BitSet crawled = new BitSet();
+
+    int getId(URI location, JsonPointer pointer) {
+        HashMap<JsonPointer, Integer> pointerIds = ids.get(location);
+        if (pointerIds == null) {
+            pointerIds = new HashMap<>();
+            ids.put(location, pointerIds);
+        }
+        Integer id = pointerIds.get(pointer);
+        if (id == null) {
+            id = locations.size();
+            pointerIds.put(pointer, id);
+            locations.add(location);
+            pointers.add(pointer);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the id of the location, or -1 if it hasn't been seen.
+     */
+    int findId(URI location, JsonPointer pointer) {
+        HashMap<JsonPointer, Integer> pointerIds = ids.get(location);
+        Integer id = pointerIds == null ? null : pointerIds.get(pointer);
+        return id == null ? -1 : id;
+    }
+
+    URI getLocation(int id) {
+        return locations.get(id);
+    }
+
+    JsonPointer getPointer(int id) {
+        return pointers.get(id);
+    }
+
+    int size() {
+        return locations.size();
+    }
+
+    int getEdgeCount() {
+        return edges;
+    }
+
+    int getEdgeFrom(int edge) {
+        return from[edge];
+    }
+
+    int getEdgeTo(int edge) {
+        return to[edge];
+    }
+
+    void addEdge(int source, int target) {
+        if (edges == from.length) {
+            from = Arrays.copyOf(from, edges * 2);
+            to = Arrays.copyOf(to, edges * 2);
+        }
+        from[edges] = source;
+        to[edges] = target;
+        edges++;
+    }
+
+    /**
+     * Puts the $ref on the chain of indirections being resolved, returns false if
+     * it already is, which means the chain is circular.
+     */
+    boolean enter(int id) {
+        if (chain.get(id)) {
+            return false;
+        }
+        chain.set(id);
+        return true;
+    }
+
+    void leave(int id) {
+        chain.clear(id);
+    }
+
+    /**
+     * Returns true the first time it is called for a location.
+     */
+    boolean markCrawled(int id) {
+        if (crawled.get(id)) {
+            return false;
+        }
+        crawled.set(id);
+        return true;
+    }
+
+    /**
+     * Fills adjacency arrays from a list of edges, the targets of edges from
+     * location i are targets[offsets[i]] to targets[offsets[i + 1] - 1].
+     */
+    static void toAdjacency(int size, int[] from, int[] to, int edges, int[] offsets, int[] targets) {
+        for (int i = 0; i < edges; i++) {
+            offsets[from[i] + 1]++;
+        }
+        for (int i = 0; i < size; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] fill = Arrays.copyOf(offsets, size);
+        for (int i = 0; i < edges; i++) {
+            targets[fill[from[i]]++] = to[i];
+        }
+    }
+
+    /**
+     * Returns the strongly connected component of each location, numbered in the
+     * order they are completed, using an iterative version of Tarjan's algorithm.
+     */
+    static int[] findComponents(int size, int[] offsets, int[] targets) {
+        int[] components = new int[size];
+        int[] index = new int[size];
+        int[] lowlink = new int[size];
+        Arrays.fill(index, -1);
+        BitSet onStack = new BitSet(size);
+        int[] stack = new int[size];
+        int stackSize = 0;
+        // call stack of the depth-first search, with the next edge to follow
+        int[] calls = new int[size];
+        int[] next = new int[size];
+        int counter = 0;
+        int component = 0;
+
+        for (int start = 0; start < size; start++) {
+            if (index[start] != -1) {
+                continue;
+            }
+            int depth = 0;
+            calls[0] = start;
+            next[0] = offsets[start];
+            index[start] = lowlink[start] = counter++;
+            stack[stackSize++] = start;
+            onStack.set(start);
+
+            while (depth >= 0) {
+                int node = calls[depth];
+                if (next[depth] < offsets[node + 1]) {
+                    int target = targets[next[depth]++];
+                    if (index[target] == -1) {
+                        index[target] = lowlink[target] = counter++;
+                        stack[stackSize++] = target;
+                        onStack.set(target);
+                        depth++;
+                        calls[depth] = target;
+                        next[depth] = offsets[target];
+                    } else if (onStack.get(target)) {
+                        lowlink[node] = Math.min(lowlink[node], index[target]);
+                    }
+                } else {
+                    if (lowlink[node] == index[node]) {
+                        int member;
+                        do {
+                            member = stack[--stackSize];
+                            onStack.clear(member);
+                            components[member] = component;
+                        } while (member != node);
+                        component++;
+                    }
+                    depth--;
+                    if (depth >= 0) {
+                        int parent = calls[depth];
+                        lowlink[parent] = Math.min(lowlink[parent], lowlink[node]);
+                    }
+                }
+            }
+        }
+        return components;
+    }
+}
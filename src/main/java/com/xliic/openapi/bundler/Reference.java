@@ -30,10 +30,54 @@ public class Reference {
         this.pointer = pointer;
     }
 
+    /**
+     * Returns the location of the file containing this reference.
+     */
+    public URI getLocation() {
+        return part.location;
+    }
+
+    /**
+     * Returns the pointer to this reference within its file.
+     */
+    public JsonPointer getPointer() {
+        return pointer;
+    }
+
+    /**
+     * Returns the value of $ref, as written in the file until the reference is
+     * remapped in place.
+     */
+    public String getRef() {
+        return node.get("$ref").asText();
+    }
+
+    /**
+     * Returns the number of references followed to reach the target, 0 if the
+     * target isn't a reference itself.
+     */
+    public int getIndirections() {
+        return indirections;
+    }
+
+    /**
+     * Returns the reason this reference could not be resolved, or null.
+     */
+    public ReferenceResolutionFailure getFailure() {
+        return failure;
+    }
+
     public boolean isResolved() {
         return this.resolvedValue != null;
     }
 
+    public boolean isCircular() {
+        return this.circular;
+    }
+
+    /**
+     * Returns the pointer to the target within its file, only valid once resolved.
+     */
     public JsonPointer getResolvedPointer() {
         return JsonPointer.fromJsonPath(resolvedPath);
     }
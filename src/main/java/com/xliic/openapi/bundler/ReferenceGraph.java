@@ -0,0 +1,366 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Dependencies between the locations and the files of a bundled document.
+ *
+ * Locations are the $refs found while bundling and the values they resolve to,
+ * identified by ints from 0 to size() - 1. A location depends on another when it
+ * is a value containing a $ref, or a $ref resolving to a value. Files depend on
+ * each other when some of their locations do.
+ *
+ * Edges are kept in adjacency arrays, in both directions, so that the graph
+ * stays compact for large documents. The graph is immutable.
+ */
+public final class ReferenceGraph {
+    private final URI[] files;
+    private final int[] fileIds;
+    private final String[] pointers;
+    private final HashMap<URI, Integer> fileIndex = new HashMap<>();
+    private final HashMap<URI, HashMap<String, Integer>> index = new HashMap<>();
+    // location edges, outgoing and incoming
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final int[] inOffsets;
+    private final int[] inSources;
+    // file edges, outgoing and incoming
+    private final int[] fileOutOffsets;
+    private final int[] fileOutTargets;
+    private final int[] fileInOffsets;
+    private final int[] fileInSources;
+    private final List<int[]> cycles;
+    private final boolean[] cyclic;
+
+    ReferenceGraph(RefGraph graph) {
+        int size = graph.size();
+        pointers = new String[size];
+        fileIds = new int[size];
+        ArrayList<URI> locations = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            URI file = graph.getLocation(i);
+            Integer fileId = fileIndex.get(file);
+            if (fileId == null) {
+                fileId = locations.size();
+                fileIndex.put(file, fileId);
+                locations.add(file);
+            }
+            fileIds[i] = fileId;
+            pointers[i] = graph.getPointer(i).getValue();
+            index.computeIfAbsent(file, key -> new HashMap<>()).put(pointers[i], i);
+        }
+        files = locations.toArray(new URI[0]);
+
+        long[] edges = new long[graph.getEdgeCount()];
+        for (int i = 0; i < edges.length; i++) {
+            edges[i] = pack(graph.getEdgeFrom(i), graph.getEdgeTo(i));
+        }
+        edges = distinct(edges);
+        outOffsets = new int[size + 1];
+        outTargets = new int[edges.length];
+        inOffsets = new int[size + 1];
+        inSources = new int[edges.length];
+        toAdjacency(size, edges, outOffsets, outTargets, inOffsets, inSources);
+
+        long[] fileEdges = new long[edges.length];
+        int count = 0;
+        for (long edge : edges) {
+            int from = fileIds[(int) (edge >>> 32)];
+            int to = fileIds[(int) edge];
+            if (from != to) {
+                fileEdges[count++] = pack(from, to);
+            }
+        }
+        fileEdges = distinct(Arrays.copyOf(fileEdges, count));
+        fileOutOffsets = new int[files.length + 1];
+        fileOutTargets = new int[fileEdges.length];
+        fileInOffsets = new int[files.length + 1];
+        fileInSources = new int[fileEdges.length];
+        toAdjacency(files.length, fileEdges, fileOutOffsets, fileOutTargets, fileInOffsets, fileInSources);
+
+        cyclic = new boolean[size];
+        cycles = findCycles(size);
+    }
+
+    /**
+     * Returns the number of locations.
+     */
+    public int size() {
+        return pointers.length;
+    }
+
+    public int getEdgeCount() {
+        return outTargets.length;
+    }
+
+    /**
+     * Returns the id of the location, or -1 if it is not in the graph.
+     */
+    public int find(URI file, String pointer) {
+        HashMap<String, Integer> pointerIds = index.get(file);
+        Integer id = pointerIds == null ? null : pointerIds.get(pointer);
+        return id == null ? -1 : id;
+    }
+
+    public URI getFile(int location) {
+        return files[fileIds[location]];
+    }
+
+    public String getPointer(int location) {
+        return pointers[location];
+    }
+
+    /**
+     * Returns the locations this location depends on.
+     */
+    public int[] getDependencies(int location) {
+        return Arrays.copyOfRange(outTargets, outOffsets[location], outOffsets[location + 1]);
+    }
+
+    /**
+     * Returns the locations depending on this location.
+     */
+    public int[] getDependents(int location) {
+        return Arrays.copyOfRange(inSources, inOffsets[location], inOffsets[location + 1]);
+    }
+
+    public int getFanOut(int location) {
+        return outOffsets[location + 1] - outOffsets[location];
+    }
+
+    public int getFanIn(int location) {
+        return inOffsets[location + 1] - inOffsets[location];
+    }
+
+    public List<URI> getFiles() {
+        return Collections.unmodifiableList(Arrays.asList(files));
+    }
+
+    /**
+     * Returns the files this file refers to.
+     */
+    public List<URI> getFileDependencies(URI file) {
+        Integer id = fileIndex.get(file);
+        return id == null ? Collections.emptyList() : toFiles(fileOutTargets, fileOutOffsets[id], fileOutOffsets[id + 1]);
+    }
+
+    /**
+     * Returns the files referring to this file.
+     */
+    public List<URI> getFileDependents(URI file) {
+        Integer id = fileIndex.get(file);
+        return id == null ? Collections.emptyList() : toFiles(fileInSources, fileInOffsets[id], fileInOffsets[id + 1]);
+    }
+
+    /**
+     * Returns the cycles, as the sorted locations of each strongly connected
+     * component of more than one location or with a location depending on
+     * itself.
+     */
+    public List<int[]> getCycles() {
+        ArrayList<int[]> result = new ArrayList<>(cycles.size());
+        for (int[] cycle : cycles) {
+            result.add(cycle.clone());
+        }
+        return result;
+    }
+
+    public boolean isCyclic(int location) {
+        return cyclic[location];
+    }
+
+    public String toJson() {
+        StringWriter writer = new StringWriter();
+        try {
+            writeJson(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    public String toDot() {
+        StringWriter writer = new StringWriter();
+        try {
+            writeDot(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes the graph as JSON: files, locations as their file index and pointer,
+     * location edges and file edges as pairs of indexes, and cycles.
+     */
+    public void writeJson(Writer writer) throws IOException {
+        try (JsonGenerator generator = new JsonFactory().createGenerator(writer)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("files");
+            for (URI file : files) {
+                generator.writeString(file.toString());
+            }
+            generator.writeEndArray();
+
+            generator.writeArrayFieldStart("locations");
+            for (int i = 0; i < size(); i++) {
+                generator.writeStartObject();
+                generator.writeNumberField("file", fileIds[i]);
+                generator.writeStringField("pointer", pointers[i]);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+
+            generator.writeArrayFieldStart("edges");
+            writeEdges(generator, outOffsets, outTargets);
+            generator.writeEndArray();
+
+            generator.writeArrayFieldStart("fileEdges");
+            writeEdges(generator, fileOutOffsets, fileOutTargets);
+            generator.writeEndArray();
+
+            generator.writeArrayFieldStart("cycles");
+            for (int[] cycle : cycles) {
+                generator.writeArray(cycle, 0, cycle.length);
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * Writes the location graph in the Graphviz DOT format, locations in cycles
+     * are highlighted.
+     */
+    public void writeDot(Writer writer) throws IOException {
+        writer.write("digraph references {\n");
+        for (int i = 0; i < size(); i++) {
+            writer.write("  " + i + " [label=" + quote(getFile(i) + "#" + pointers[i])
+                    + (cyclic[i] ? ", color=red" : "") + "];\n");
+        }
+        for (int i = 0; i < size(); i++) {
+            for (int j = outOffsets[i]; j < outOffsets[i + 1]; j++) {
+                writer.write("  " + i + " -> " + outTargets[j] + ";\n");
+            }
+        }
+        writer.write("}\n");
+    }
+
+    private List<int[]> findCycles(int size) {
+        int[] components = RefGraph.findComponents(size, outOffsets, outTargets);
+        int[] sizes = new int[size];
+        for (int i = 0; i < size; i++) {
+            sizes[components[i]]++;
+        }
+        for (int i = 0; i < size; i++) {
+            if (sizes[components[i]] > 1) {
+                cyclic[i] = true;
+            }
+            for (int j = outOffsets[i]; j < outOffsets[i + 1]; j++) {
+                if (outTargets[j] == i) {
+                    cyclic[i] = true;
+                }
+            }
+        }
+
+        HashMap<Integer, ArrayList<Integer>> members = new HashMap<>();
+        ArrayList<Integer> order = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            if (cyclic[i]) {
+                ArrayList<Integer> member = members.get(components[i]);
+                if (member == null) {
+                    member = new ArrayList<>();
+                    members.put(components[i], member);
+                    order.add(components[i]);
+                }
+                member.add(i);
+            }
+        }
+
+        ArrayList<int[]> result = new ArrayList<>(order.size());
+        for (Integer component : order) {
+            ArrayList<Integer> member = members.get(component);
+            int[] cycle = new int[member.size()];
+            for (int i = 0; i < cycle.length; i++) {
+                cycle[i] = member.get(i);
+            }
+            result.add(cycle);
+        }
+        return result;
+    }
+
+    private List<URI> toFiles(int[] ids, int from, int to) {
+        ArrayList<URI> result = new ArrayList<>(to - from);
+        for (int i = from; i < to; i++) {
+            result.add(files[ids[i]]);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private static void writeEdges(JsonGenerator generator, int[] offsets, int[] targets) throws IOException {
+        for (int i = 0; i < offsets.length - 1; i++) {
+            for (int j = offsets[i]; j < offsets[i + 1]; j++) {
+                generator.writeStartArray();
+                generator.writeNumber(i);
+                generator.writeNumber(targets[j]);
+                generator.writeEndArray();
+            }
+        }
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static long pack(int from, int to) {
+        return ((long) from << 32) | (to & 0xffffffffL);
+    }
+
+    /**
+     * Returns the sorted distinct edges.
+     */
+    private static long[] distinct(long[] edges) {
+        long[] sorted = edges.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, count);
+    }
+
+    /**
+     * Fills the adjacency arrays in both directions from sorted edges.
+     */
+    private static void toAdjacency(int size, long[] edges, int[] outOffsets, int[] outTargets, int[] inOffsets,
+            int[] inSources) {
+        int[] from = new int[edges.length];
+        int[] to = new int[edges.length];
+        for (int i = 0; i < edges.length; i++) {
+            from[i] = (int) (edges[i] >>> 32);
+            to[i] = (int) edges[i];
+        }
+        RefGraph.toAdjacency(size, from, to, edges.length, outOffsets, outTargets);
+        RefGraph.toAdjacency(size, to, from, edges.length, inOffsets, inSources);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Remembers how $ref values were resolved during a single bundling run, keyed
+ * by the location of the part containing the $ref and the raw $ref string.
+ *
+ * Only non-circular resolutions are stored: whether a chain of references is
+ * reported as circular depends on the chain it was reached through, while a
+ * non-circular resolution is the same wherever it is reached from.
+ *
+ * The cache also records which parts were read while resolving the references
+ * of each part, so that it can be kept across runs and invalidated when some of
+ * the files change, see IncrementalBundler.
+ */
+public class ResolutionCache {
+    private HashMap<URI, HashMap<String, Resolution>> resolutions = new HashMap<>();
+    // part location to the locations of parts its references were resolved in
+    private HashMap<URI, HashSet<URI>> dependencies = new HashMap<>();
+    // and the reverse, part location to the locations of parts depending on it
+    private HashMap<URI, HashSet<URI>> dependents = new HashMap<>();
+    private int hits = 0;
+    private int misses = 0;
+
+    Resolution get(URI location, String ref) {
+        HashMap<String, Resolution> refs = resolutions.get(location);
+        Resolution resolution = refs == null ? null : refs.get(ref);
+        if (resolution == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return resolution;
+    }
+
+    void put(URI location, String ref, Reference reference) {
+        if (!reference.isResolved() || reference.circular) {
+            return;
+        }
+
+        HashMap<String, Resolution> refs = resolutions.get(location);
+        if (refs == null) {
+            refs = new HashMap<>();
+            resolutions.put(location, refs);
+        }
+        refs.put(ref, new Resolution(reference));
+    }
+
+    void addDependency(URI location, URI target) {
+        if (location.equals(target)) {
+            return;
+        }
+        if (dependencies.computeIfAbsent(location, key -> new HashSet<>()).add(target)) {
+            dependents.computeIfAbsent(target, key -> new HashSet<>()).add(location);
+        }
+    }
+
+    /**
+     * Forgets the resolutions of references in the given parts and in every part
+     * which depends on them, directly or through other parts.
+     */
+    public void invalidate(Collection<URI> changed) {
+        HashSet<URI> invalid = new HashSet<>(changed);
+        ArrayDeque<URI> queue = new ArrayDeque<>(changed);
+        while (!queue.isEmpty()) {
+            HashSet<URI> sources = dependents.get(queue.poll());
+            if (sources != null) {
+                for (URI source : sources) {
+                    if (invalid.add(source)) {
+                        queue.add(source);
+                    }
+                }
+            }
+        }
+
+        for (URI location : invalid) {
+            resolutions.remove(location);
+            // dependencies are recorded again when the references are resolved
+            HashSet<URI> targets = dependencies.remove(location);
+            if (targets != null) {
+                for (URI target : targets) {
+                    HashSet<URI> sources = dependents.get(target);
+                    sources.remove(location);
+                    if (sources.isEmpty()) {
+                        dependents.remove(target);
+                    }
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        resolutions.clear();
+        dependencies.clear();
+        dependents.clear();
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    public int size() {
+        int size = 0;
+        for (HashMap<String, Resolution> refs : resolutions.values()) {
+            size += refs.size();
+        }
+        return size;
+    }
+
+    static class Resolution {
+        final Document.Part part;
+        final JsonNode value;
+        final JsonPath path;
+        final int indirections;
+        final boolean circular;
+
+        Resolution(Reference reference) {
+            this.part = reference.resolvedPart;
+            this.value = reference.resolvedValue;
+            this.path = reference.resolvedPath;
+            this.indirections = reference.indirections;
+            this.circular = reference.circular;
+        }
+
+        void apply(Reference reference) {
+            reference.resolvedPart = part;
+            reference.resolvedValue = value;
+            reference.resolvedPath = path;
+            reference.indirections = indirections;
+            reference.circular = circular;
+        }
+    }
+}
@@ -9,6 +9,8 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
@@ -30,14 +32,49 @@ public class Resolver {
     }
 
     public static void resolveReference(Parser parser, Reference reference) {
-        resolveReference(parser, reference, new ArrayList<URI>());
+        resolveReference(parser, null, new RefGraph(), reference);
     }
 
+    public static void resolveReference(Parser parser, ResolutionCache cache, Reference reference) {
+        resolveReference(parser, cache, new RefGraph(), reference);
+    }
+
+    /**
+     * @deprecated circular references are detected without the list of visited
+     *             references, which is ignored
+     */
+    @Deprecated
     public static void resolveReference(Parser parser, Reference reference, ArrayList<URI> visited) {
+        resolveReference(parser, null, new RefGraph(), reference);
+    }
+
+    static void resolveReference(Parser parser, ResolutionCache cache, RefGraph graph, Reference reference) {
+        BundlerListener listener = parser.getListener();
+        if (listener == BundlerListener.NONE) {
+            resolve(parser, cache, graph, reference);
+            return;
+        }
+        listener.resolveStarted(reference);
+        try {
+            resolve(parser, cache, graph, reference);
+        } finally {
+            listener.resolveFinished(reference);
+        }
+    }
+
+    private static void resolve(Parser parser, ResolutionCache cache, RefGraph graph, Reference reference) {
+        String target = reference.node.get("$ref").asText();
+        if (cache != null) {
+            ResolutionCache.Resolution resolution = cache.get(reference.part.location, target);
+            if (resolution != null) {
+                resolution.apply(reference);
+                return;
+            }
+        }
 
         URI ref;
         try {
-            ref = new URI(reference.node.get("$ref").asText());
+            ref = new URI(target);
         } catch (URISyntaxException e) {
             reference.failure = new ReferenceResolutionFailure(
                     String.format("Failed to parse $ref: %s", e.getMessage()), reference.part.location,
@@ -56,13 +93,27 @@ public class Resolver {
             return;
         }
 
-        if (visited.contains(reference.getURI())) {
+        if (cache != null) {
+            cache.addDependency(reference.part.location, part.location);
+        }
+
+        // the $ref is taken off the chain once resolved, a $ref met again while
+        // resolving itself is circular
+        int id = graph.getId(reference.part.location, reference.pointer);
+        if (!graph.enter(id)) {
             resolveCircular(reference);
             return;
         }
 
-        visited.add(reference.getURI());
+        try {
+            resolvePointer(parser, cache, graph, reference, target, ref, part);
+        } finally {
+            graph.leave(id);
+        }
+    }
 
+    private static void resolvePointer(Parser parser, ResolutionCache cache, RefGraph graph, Reference reference,
+            String target, URI ref, Document.Part part) {
         JsonPointer pointer = ref.getFragment() == null ? new JsonPointer("") : new JsonPointer(ref.getFragment());
         JsonPath path = pointer.getJsonPath();
         JsonNode resolved = part.node;
@@ -70,10 +121,9 @@ public class Resolver {
         int indirections = 0;
         boolean circular = false;
 
-        for (int i = 0; i < path.size(); i++) {
-            String key = path.get(i);
+        for (String key : path) {
             resolved = Util.get(resolved, key);
-            resolvedPath.add(key);
+            resolvedPath = resolvedPath.withKey(key);
             if (resolved == null) {
                 reference.failure = new ReferenceResolutionFailure(
                         String.format("Failed to resolve JSON Pointer: %s", ref), reference.part.location,
@@ -83,7 +133,7 @@ public class Resolver {
 
             if (isRef(resolved)) {
                 Reference indirect = new Reference(part, resolved, resolvedPath.toPointer());
-                resolveReference(parser, indirect, visited);
+                resolveReference(parser, cache, graph, indirect);
                 if (indirect.isResolved()) {
                     indirections = indirections + indirect.indirections + 1;
                     resolved = indirect.resolvedValue;
@@ -103,6 +153,9 @@ public class Resolver {
         reference.indirections = indirections;
         reference.circular = circular;
 
+        if (cache != null) {
+            cache.put(reference.part.location, target, reference);
+        }
     }
 
     private static Reference resolveCircular(Reference reference) {
@@ -144,12 +197,25 @@ public class Resolver {
         Document.Part targetPart = Document.getTargetPart(part, target);
         if (targetPart == null) {
             URI targetFileUri = Document.getTargetPartUri(part, target);
+            Document document = part.getDocument();
+            CompletableFuture<Part> loading = new CompletableFuture<>();
+            CompletableFuture<Part> pending = document.loading.putIfAbsent(targetFileUri, loading);
+            if (pending == null) {
+                loadPart(parser, document, targetFileUri, loading);
+                pending = loading;
+            }
+
             try {
-                JsonNode root = parser.readTree(targetFileUri);
-                targetPart = part.getDocument().createPart(targetFileUri, root);
-            } catch (WorkspaceException e) {
-                throw e;
-            } catch (Exception e) {
+                // blocks only if the part is being loaded by a Prefetcher
+                targetPart = pending.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof WorkspaceException) {
+                    throw (WorkspaceException) e.getCause();
+                }
+                throw new DocumentLoadingException(
+                        String.format("Failed to load external reference: %s", e.getCause()), targetFileUri);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
                 throw new DocumentLoadingException(String.format("Failed to load external reference: %s", e),
                         targetFileUri);
             }
@@ -157,4 +223,13 @@ public class Resolver {
         return targetPart;
     }
 
+    static void loadPart(Parser parser, Document document, URI location, CompletableFuture<Part> loading) {
+        try {
+            JsonNode root = parser.readTree(location);
+            loading.complete(document.createPart(location, root));
+        } catch (Exception e) {
+            loading.completeExceptionally(e);
+        }
+    }
+
 }
\ No newline at end of file
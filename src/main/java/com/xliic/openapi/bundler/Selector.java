@@ -0,0 +1,104 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Builds a copy of the root document where paths and webhooks only contain the
+ * selected path items or operations, for bundling a part of the document.
+ *
+ * Selections stop at $refs and arrays: a pointer going through a referenced
+ * path item selects the whole path item. Path level parameters and servers are
+ * kept along with the selected operations. Other members of the document are
+ * shared with the original, which is left untouched.
+ */
+class Selector {
+    private static final List<String> SELECTABLE = Arrays.asList("paths", "webhooks");
+    private static final List<String> SHARED = Arrays.asList("parameters", "servers");
+
+    private final JsonNode original;
+    private final ObjectNode root;
+    // containers created by the selector, the others are shared with the original
+    private final Set<JsonNode> created = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private Selector(JsonNode original) {
+        this.original = original;
+        this.root = ((ObjectNode) original).objectNode();
+        this.root.setAll((ObjectNode) original);
+        for (String name : SELECTABLE) {
+            if (original.path(name).isObject()) {
+                root.set(name, create(original.get(name)));
+            }
+        }
+    }
+
+    static JsonNode select(JsonNode root, Collection<JsonPointer> pointers) {
+        if (!root.isObject()) {
+            throw new IllegalArgumentException("Can't select, document is not an object");
+        }
+        Selector selector = new Selector(root);
+        for (JsonPointer pointer : pointers) {
+            selector.select(pointer);
+        }
+        return selector.root;
+    }
+
+    private void select(JsonPointer pointer) {
+        String[] path = pointer.getJsonPath().toArray();
+        if (path.length < 2 || !SELECTABLE.contains(path[0])) {
+            throw new IllegalArgumentException("Can only select path items and operations, not: " + pointer);
+        }
+
+        JsonNode source = original.get(path[0]);
+        JsonNode target = root.get(path[0]);
+        for (int i = 1; i < path.length; i++) {
+            String key = path[i];
+            JsonNode child = source.get(key);
+            if (child == null) {
+                throw new IllegalArgumentException("Selected value does not exist: " + pointer);
+            }
+            boolean last = i == path.length - 1 || !child.isObject() || Resolver.isRef(child);
+            if (last) {
+                ((ObjectNode) target).set(key, child);
+                return;
+            }
+
+            JsonNode selected = target.get(key);
+            if (selected == null) {
+                selected = create(child);
+                ((ObjectNode) target).set(key, selected);
+                if (i == 1) {
+                    // keep path level members shared by all operations
+                    for (String name : SHARED) {
+                        if (child.has(name)) {
+                            ((ObjectNode) selected).set(name, child.get(name));
+                        }
+                    }
+                }
+            } else if (!created.contains(selected)) {
+                // the whole value is selected already
+                return;
+            }
+            source = child;
+            target = selected;
+        }
+    }
+
+    private ObjectNode create(JsonNode node) {
+        ObjectNode result = ((ObjectNode) node).objectNode();
+        created.add(result);
+        return result;
+    }
+}
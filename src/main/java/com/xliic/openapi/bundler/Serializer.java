@@ -5,24 +5,179 @@
 
 package com.xliic.openapi.bundler;
 
+import java.io.FilterOutputStream;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.StreamWriteConstraints;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 public class Serializer {
     protected final ObjectMapper mapper;
+    private final BundlerListener listener;
+
+    public static class Options {
+        private boolean prettyPrint;
+        private int maxNestingDepth;
+        private BundlerListener listener;
+
+        public Options() {
+            this.prettyPrint = true;
+            this.maxNestingDepth = StreamWriteConstraints.DEFAULT_MAX_DEPTH;
+            this.listener = BundlerListener.NONE;
+        }
+
+        public boolean isPrettyPrint() {
+            return prettyPrint;
+        }
+
+        public void setPrettyPrint(boolean prettyPrint) {
+            this.prettyPrint = prettyPrint;
+        }
+
+        public int getMaxNestingDepth() {
+            return maxNestingDepth;
+        }
+
+        /**
+         * Sets the maximum nesting of objects and arrays written, 1000 by default.
+         */
+        public void setMaxNestingDepth(int maxNestingDepth) {
+            this.maxNestingDepth = maxNestingDepth;
+        }
+
+        public BundlerListener getListener() {
+            return listener;
+        }
+
+        public void setListener(BundlerListener listener) {
+            this.listener = listener == null ? BundlerListener.NONE : listener;
+        }
+    }
 
     public Serializer() {
-        mapper = new ObjectMapper();
-        mapper.enable(SerializationFeature.INDENT_OUTPUT);
+        this(new Options());
+    }
+
+    public Serializer(Options options) {
+        StreamWriteConstraints constraints = StreamWriteConstraints.builder()
+                .maxNestingDepth(options.getMaxNestingDepth()).build();
+        mapper = new ObjectMapper(JsonFactory.builder().streamWriteConstraints(constraints).build());
+        mapper.configure(SerializationFeature.INDENT_OUTPUT, options.isPrettyPrint());
+        // streams passed to serialize() are flushed, but closing them is up to the caller
+        mapper.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+        listener = options.getListener();
     }
 
     public String serialize(Document document) throws JsonProcessingException {
-        return mapper.writeValueAsString(document.root.node);
+        return serialize(document.root.node);
+    }
+
+    public String serialize(JsonNode node) throws JsonProcessingException {
+        if (listener == BundlerListener.NONE) {
+            return mapper.writeValueAsString(node);
+        }
+        long start = System.nanoTime();
+        String result = mapper.writeValueAsString(node);
+        listener.serializeFinished(result.length(), System.nanoTime() - start);
+        return result;
+    }
+
+    public void serialize(Document document, OutputStream out) throws IOException {
+        serialize(document.root.node, out);
+    }
+
+    public void serialize(JsonNode node, OutputStream out) throws IOException {
+        if (listener == BundlerListener.NONE) {
+            mapper.writeValue(out, node);
+            return;
+        }
+        long start = System.nanoTime();
+        CountingOutputStream counting = new CountingOutputStream(out);
+        mapper.writeValue(counting, node);
+        listener.serializeFinished(counting.count, System.nanoTime() - start);
+    }
+
+    public void serialize(Document document, Writer writer) throws IOException {
+        serialize(document.root.node, writer);
+    }
+
+    public void serialize(JsonNode node, Writer writer) throws IOException {
+        if (listener == BundlerListener.NONE) {
+            mapper.writeValue(writer, node);
+            return;
+        }
+        long start = System.nanoTime();
+        CountingWriter counting = new CountingWriter(writer);
+        mapper.writeValue(counting, node);
+        listener.serializeFinished(counting.count, System.nanoTime() - start);
+    }
+
+    public void serialize(Document document, WritableByteChannel channel) throws IOException {
+        serialize(document.root.node, channel);
+    }
+
+    public void serialize(JsonNode node, WritableByteChannel channel) throws IOException {
+        serialize(node, Channels.newOutputStream(channel));
     }
 
     public ObjectNode createObjectNode() {
         return mapper.createObjectNode();
     }
-}
\ No newline at end of file
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        long count = 0;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    private static class CountingWriter extends FilterWriter {
+        long count = 0;
+
+        CountingWriter(Writer out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int c) throws IOException {
+            out.write(c);
+            count++;
+        }
+
+        @Override
+        public void write(char[] cbuf, int off, int len) throws IOException {
+            out.write(cbuf, off, len);
+            count += len;
+        }
+
+        @Override
+        public void write(String str, int off, int len) throws IOException {
+            out.write(str, off, len);
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.xliic.common.ContentType;
+import com.xliic.common.WorkspaceContent;
+
+/**
+ * Parsed files stored on disk in the binary Smile format, so that files don't
+ * need to be parsed again across runs. Each file is stored under a hash of its
+ * URI, prefixed with the fingerprint of the contents it was parsed from, and is
+ * only used when the contents are unchanged.
+ *
+ * By default only YAML files are stored, as JSON is already fast to parse.
+ */
+public class TreeCache {
+    // hex encoded SHA-256 of the source contents
+    private static final int HEADER_LENGTH = 64;
+
+    private final Path directory;
+    private final boolean yamlOnly;
+    private final ObjectMapper mapper = new ObjectMapper(new SmileFactory());
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public TreeCache(Path directory) {
+        this(directory, true);
+    }
+
+    public TreeCache(Path directory, boolean yamlOnly) {
+        this.directory = directory;
+        this.yamlOnly = yamlOnly;
+    }
+
+    boolean accepts(WorkspaceContent content) {
+        return !yamlOnly || content.type == ContentType.YAML;
+    }
+
+    JsonNode get(URI uri, String fingerprint) {
+        try {
+            byte[] data = Files.readAllBytes(getPath(uri));
+            if (data.length > HEADER_LENGTH
+                    && new String(data, 0, HEADER_LENGTH, StandardCharsets.US_ASCII).equals(fingerprint)) {
+                JsonNode node = mapper.readTree(data, HEADER_LENGTH, data.length - HEADER_LENGTH);
+                hits.incrementAndGet();
+                return node;
+            }
+        } catch (NoSuchFileException e) {
+            // not stored
+        } catch (IOException e) {
+            // unreadable or corrupted, parse the file again
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    void put(URI uri, String fingerprint, JsonNode node) {
+        try {
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, "tree", ".tmp");
+            try {
+                try (OutputStream out = Files.newOutputStream(temp)) {
+                    out.write(fingerprint.getBytes(StandardCharsets.US_ASCII));
+                    mapper.writeValue(out, node);
+                }
+                try {
+                    Files.move(temp, getPath(uri), StandardCopyOption.ATOMIC_MOVE,
+                            StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, getPath(uri), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            // the cache is an optimization, failing to store a file is not an error
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private Path getPath(URI uri) {
+        return directory.resolve(PartCache.fingerprint(new WorkspaceContent(uri.toString(), null)) + ".smile");
+    }
+}
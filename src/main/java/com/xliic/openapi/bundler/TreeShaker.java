@@ -0,0 +1,292 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Removes components which are not referenced, directly or through other
+ * components, from the rest of the bundled document.
+ *
+ * Security schemes are always kept, since they are referred to by name rather
+ * than by $ref. Discriminator mappings count as references and so do the
+ * schemas extending a schema with a discriminator through allOf, as they can be
+ * selected by name.
+ */
+class TreeShaker {
+    private static final List<String> COMPONENTS = Arrays.asList("schemas", "responses", "parameters", "examples",
+            "requestBodies", "headers", "links", "callbacks", "pathItems");
+    private static final List<String> DEFINITIONS = Arrays.asList("definitions", "parameters", "responses");
+
+    private final JsonNode root;
+    private final boolean swagger;
+    // shaken sections by their path, such as "components/schemas" or "definitions"
+    private final LinkedHashMap<JsonPath, ObjectNode> sections = new LinkedHashMap<>();
+    private final HashSet<JsonPath> reachable = new HashSet<>();
+    private final HashSet<JsonPath> discriminators = new HashSet<>();
+    private final ArrayDeque<JsonNode> queue = new ArrayDeque<>();
+
+    private TreeShaker(JsonNode root) {
+        this.root = root;
+        this.swagger = root.has("swagger");
+        if (swagger) {
+            for (String name : DEFINITIONS) {
+                if (root.path(name).isObject()) {
+                    sections.put(new JsonPath(name), (ObjectNode) root.get(name));
+                }
+            }
+        } else {
+            JsonNode components = root.path("components");
+            for (String name : COMPONENTS) {
+                if (components.path(name).isObject()) {
+                    sections.put(new JsonPath("components", name), (ObjectNode) components.get(name));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the document without unreachable components, removing them from the
+     * mapping as well. Unless done in place, containers are copied before being
+     * modified, the document itself is left untouched.
+     */
+    static JsonNode shake(JsonNode root, Mapping mapping, boolean inPlace) {
+        if (!root.isObject()) {
+            return root;
+        }
+        TreeShaker shaker = new TreeShaker(root);
+        shaker.mark();
+        return shaker.sweep(mapping, inPlace);
+    }
+
+    /**
+     * Returns the paths of the members of the document which are always kept:
+     * everything but the components in the shaken sections.
+     */
+    static List<JsonPath> getRoots(JsonNode root) {
+        return root.isObject() ? new TreeShaker(root).getRoots() : Collections.singletonList(new JsonPath());
+    }
+
+    /**
+     * Returns the paths of the components reachable from the roots through local
+     * references.
+     */
+    static Set<JsonPath> findReachable(JsonNode root) {
+        if (!root.isObject()) {
+            return Collections.emptySet();
+        }
+        TreeShaker shaker = new TreeShaker(root);
+        shaker.mark();
+        return Collections.unmodifiableSet(shaker.reachable);
+    }
+
+    private List<JsonPath> getRoots() {
+        ArrayList<JsonPath> roots = new ArrayList<>();
+        Iterator<Map.Entry<String, JsonNode>> fields = root.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (field.getKey().equals("components") && !swagger) {
+                Iterator<String> components = field.getValue().fieldNames();
+                while (components.hasNext()) {
+                    JsonPath component = new JsonPath("components", components.next());
+                    if (!sections.containsKey(component)) {
+                        roots.add(component);
+                    }
+                }
+            } else if (!sections.containsKey(new JsonPath(field.getKey()))) {
+                roots.add(new JsonPath(field.getKey()));
+            }
+        }
+        return roots;
+    }
+
+    private void mark() {
+        for (JsonPath path : getRoots()) {
+            JsonNode node = root;
+            for (String key : path) {
+                node = node.get(key);
+            }
+            queue.add(node);
+        }
+
+        scan();
+        while (extendDiscriminators()) {
+            scan();
+        }
+    }
+
+    private void scan() {
+        while (!queue.isEmpty()) {
+            JsonNode node = queue.poll();
+            if (node.isObject()) {
+                JsonNode ref = node.get("$ref");
+                if (ref != null && ref.isTextual()) {
+                    reach(ref.asText());
+                }
+                JsonNode mapping = node.path("discriminator").path("mapping");
+                Iterator<JsonNode> values = mapping.elements();
+                while (values.hasNext()) {
+                    String value = values.next().asText();
+                    // mapping values are either references or schema names
+                    reach(value.contains("/") || value.startsWith("#") ? value
+                            : "#/" + getSchemas().toPointer().getValue().substring(1) + "/" + value);
+                }
+            }
+            if (node.isContainerNode()) {
+                Iterator<JsonNode> children = node.elements();
+                while (children.hasNext()) {
+                    JsonNode child = children.next();
+                    if (child.isContainerNode()) {
+                        queue.add(child);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks schemas extending reachable schemas with a discriminator, returns true
+     * if any were found.
+     */
+    private boolean extendDiscriminators() {
+        ObjectNode schemas = sections.get(getSchemas());
+        if (schemas == null || discriminators.isEmpty()) {
+            return false;
+        }
+
+        boolean found = false;
+        Iterator<Map.Entry<String, JsonNode>> fields = schemas.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonPath path = getSchemas().withKey(field.getKey());
+            if (reachable.contains(path)) {
+                continue;
+            }
+            Iterator<JsonNode> allOf = field.getValue().path("allOf").elements();
+            while (allOf.hasNext()) {
+                JsonPath target = getComponent(allOf.next().path("$ref").asText(null));
+                if (target != null && discriminators.contains(target)) {
+                    reach(path);
+                    found = true;
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    private void reach(String ref) {
+        JsonPath component = getComponent(ref);
+        if (component != null) {
+            reach(component);
+        }
+    }
+
+    private void reach(JsonPath component) {
+        ObjectNode section = sections.get(component.getParent());
+        JsonNode node = section.get(component.getLastKey());
+        if (node != null && reachable.add(component)) {
+            queue.add(node);
+            if (component.getParent().equals(getSchemas()) && node.has("discriminator")) {
+                discriminators.add(component);
+            }
+        }
+    }
+
+    /**
+     * Returns the path of the component a local reference points to, or into, if
+     * the component is in one of the shaken sections.
+     */
+    private JsonPath getComponent(String ref) {
+        if (ref == null || !ref.startsWith("#")) {
+            return null;
+        }
+        String fragment;
+        try {
+            fragment = new URI(ref).getFragment();
+        } catch (URISyntaxException e) {
+            return null;
+        }
+        if (fragment == null) {
+            return null;
+        }
+
+        JsonPath path = new JsonPointer(fragment).getJsonPath();
+        int length = swagger ? 2 : 3;
+        if (path.size() < length) {
+            return null;
+        }
+        JsonPath component = new JsonPath(path.subList(0, length));
+        return sections.containsKey(component.getParent()) ? component : null;
+    }
+
+    private JsonPath getSchemas() {
+        return swagger ? new JsonPath("definitions") : new JsonPath("components", "schemas");
+    }
+
+    private JsonNode sweep(Mapping mapping, boolean inPlace) {
+        ObjectNode result = (ObjectNode) root;
+        ObjectNode components = null;
+        for (Map.Entry<JsonPath, ObjectNode> entry : sections.entrySet()) {
+            JsonPath path = entry.getKey();
+            ObjectNode section = entry.getValue();
+            ArrayList<String> unreachable = new ArrayList<>();
+            Iterator<String> names = section.fieldNames();
+            while (names.hasNext()) {
+                String name = names.next();
+                if (!reachable.contains(path.withKey(name))) {
+                    unreachable.add(name);
+                }
+            }
+            if (unreachable.isEmpty()) {
+                continue;
+            }
+
+            ObjectNode shaken = inPlace ? section : copy(section);
+            shaken.remove(unreachable);
+            for (String name : unreachable) {
+                mapping.remove(path.withKey(name));
+            }
+
+            if (!inPlace) {
+                if (result == root) {
+                    result = copy((ObjectNode) root);
+                }
+                if (swagger) {
+                    result.set(path.getLastKey(), shaken);
+                } else {
+                    if (components == null) {
+                        components = copy((ObjectNode) root.get("components"));
+                        result.set("components", components);
+                    }
+                    components.set(path.getLastKey(), shaken);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static ObjectNode copy(ObjectNode node) {
+        ObjectNode copy = JsonNodeFactory.instance.objectNode();
+        copy.setAll(node);
+        return copy;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler.jfr;
+
+import com.xliic.openapi.bundler.BundlerListener;
+
+/**
+ * Entry point for Java Flight Recorder events. The events and the listener
+ * emitting them are compiled apart, from src/main/jfr, on JDK 11 and later only.
+ * They are only loaded when both they and the JFR API are present, so this
+ * class is safe to use on JVMs without it.
+ */
+public final class FlightRecorderSupport {
+    private static final String LISTENER = "com.xliic.openapi.bundler.jfr.FlightRecorderListener";
+    private static final Class<?> LISTENER_CLASS = detect();
+
+    private FlightRecorderSupport() {
+    }
+
+    public static boolean isAvailable() {
+        return LISTENER_CLASS != null;
+    }
+
+    /**
+     * Returns a listener emitting JFR events for document loads, reference
+     * resolution, inventory build and remapping, or a listener doing nothing if JFR
+     * is not available. Events are recorded when enabled in the JFR settings, see
+     * the "OpenAPI Bundler" category.
+     */
+    public static BundlerListener listener() {
+        if (LISTENER_CLASS == null) {
+            return BundlerListener.NONE;
+        }
+        try {
+            return (BundlerListener) LISTENER_CLASS.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            return BundlerListener.NONE;
+        }
+    }
+
+    private static Class<?> detect() {
+        ClassLoader loader = FlightRecorderSupport.class.getClassLoader();
+        try {
+            Class.forName("jdk.jfr.Event", false, loader);
+            return Class.forName(LISTENER, false, loader);
+        } catch (ClassNotFoundException | LinkageError e) {
+            // no JFR, or built without the events
+            return null;
+        }
+    }
+}
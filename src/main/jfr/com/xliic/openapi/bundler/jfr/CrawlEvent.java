@@ -0,0 +1,29 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.xliic.openapi.bundler.Crawl")
+@Label("Inventory Build")
+@Category({ "OpenAPI Bundler" })
+@Description("Crawl of a document, resolving its references and building the inventory")
+class CrawlEvent extends jdk.jfr.Event {
+    @Label("Root URI")
+    String uri;
+
+    @Label("References")
+    int refs;
+
+    @Label("Inventory Size")
+    int inventorySize;
+
+    @Label("Resolution Cache Hits")
+    int resolutionCacheHits;
+}
@@ -0,0 +1,116 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler.jfr;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+
+import jdk.jfr.Event;
+
+import com.xliic.openapi.bundler.BundlerListener;
+import com.xliic.openapi.bundler.Reference;
+
+/**
+ * Emits JFR events for bundling phases. Events are started and finished on the
+ * same thread, and nest: loads happen within resolutions, which happen within
+ * the crawl, so every thread keeps a stack of events in progress.
+ */
+class FlightRecorderListener implements BundlerListener {
+    private final ThreadLocal<ArrayDeque<Event>> events = ThreadLocal.withInitial(ArrayDeque::new);
+
+    @Override
+    public void loadStarted(URI uri) {
+        start(new LoadEvent());
+    }
+
+    @Override
+    public void loadFinished(URI uri, long size, long readNanos, long parseNanos) {
+        LoadEvent event = finish(LoadEvent.class);
+        if (event != null && event.shouldCommit()) {
+            event.uri = uri.toString();
+            event.size = size;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void loadFailed(URI uri, Exception e) {
+        LoadEvent event = finish(LoadEvent.class);
+        if (event != null && event.shouldCommit()) {
+            event.uri = uri.toString();
+            event.size = -1;
+            event.failed = true;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void resolveStarted(Reference reference) {
+        start(new ResolveEvent());
+    }
+
+    @Override
+    public void resolveFinished(Reference reference) {
+        ResolveEvent event = finish(ResolveEvent.class);
+        if (event != null && event.shouldCommit()) {
+            URI uri = reference.getURI();
+            event.uri = uri.toString();
+            event.pointer = uri.getFragment();
+            event.resolved = reference.isResolved() ? reference.getResolvedURI().toString() : "";
+            event.circular = reference.isCircular();
+            event.commit();
+        }
+    }
+
+    @Override
+    public void crawlStarted(URI root) {
+        start(new CrawlEvent());
+    }
+
+    @Override
+    public void crawlFinished(URI root, int refs, int inventorySize, int resolutionCacheHits, long nanos) {
+        CrawlEvent event = finish(CrawlEvent.class);
+        if (event != null && event.shouldCommit()) {
+            event.uri = root.toString();
+            event.refs = refs;
+            event.inventorySize = inventorySize;
+            event.resolutionCacheHits = resolutionCacheHits;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void remapStarted(URI root) {
+        start(new RemapEvent());
+    }
+
+    @Override
+    public void remapFinished(URI root, long nanos) {
+        RemapEvent event = finish(RemapEvent.class);
+        if (event != null && event.shouldCommit()) {
+            event.uri = root.toString();
+            event.commit();
+        }
+    }
+
+    private void start(Event event) {
+        event.begin();
+        events.get().push(event);
+    }
+
+    private <T extends Event> T finish(Class<T> type) {
+        ArrayDeque<Event> stack = events.get();
+        while (!stack.isEmpty()) {
+            Event event = stack.pop();
+            // events of phases which failed with an exception are never finished, drop them
+            if (type.isInstance(event)) {
+                event.end();
+                return type.cast(event);
+            }
+        }
+        return null;
+    }
+}
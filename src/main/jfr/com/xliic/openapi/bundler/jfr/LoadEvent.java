@@ -0,0 +1,27 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.xliic.openapi.bundler.Load")
+@Label("Document Load")
+@Category({ "OpenAPI Bundler" })
+@Description("Reading and parsing of a file")
+class LoadEvent extends jdk.jfr.Event {
+    @Label("URI")
+    String uri;
+
+    @Label("Size")
+    @Description("Characters of text contents, bytes of byte contents, -1 if not known")
+    long size;
+
+    @Label("Failed")
+    boolean failed;
+}
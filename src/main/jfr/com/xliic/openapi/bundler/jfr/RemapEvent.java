@@ -0,0 +1,20 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.xliic.openapi.bundler.Remap")
+@Label("Remap")
+@Category({ "OpenAPI Bundler" })
+@Description("Rewriting of references and insertion of external values into the bundled document")
+class RemapEvent extends jdk.jfr.Event {
+    @Label("Root URI")
+    String uri;
+}
@@ -0,0 +1,32 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.xliic.openapi.bundler.Resolve")
+@Label("Reference Resolution")
+@Category({ "OpenAPI Bundler" })
+@Description("Resolution of a $ref, including the references it points through")
+class ResolveEvent extends jdk.jfr.Event {
+    @Label("Reference")
+    @Description("Location of the $ref")
+    String uri;
+
+    @Label("Pointer")
+    @Description("JSON Pointer of the $ref in its file")
+    String pointer;
+
+    @Label("Resolved")
+    @Description("Location the $ref resolves to, empty if it failed to resolve")
+    String resolved;
+
+    @Label("Circular")
+    boolean circular;
+}
@@ -0,0 +1,88 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import static com.xliic.openapi.bundler.TestBundler.bundle;
+import static com.xliic.openapi.bundler.TestBundler.copy;
+import static com.xliic.openapi.bundler.TestBundler.delete;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.stream.Stream;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xliic.common.FileSystemWorkspace;
+import com.xliic.common.WorkspaceException;
+
+import org.junit.jupiter.api.Test;
+
+public class BundleCacheTest {
+    @Test
+    void testBundleCache() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            BundlingException, WorkspaceException {
+        Path dir = copy("multifile-petstore");
+        Path cacheDir = Files.createTempDirectory("bundler");
+        try {
+            FileSystemWorkspace workspace = new FileSystemWorkspace(dir);
+            URI root = workspace.resolve("openapi.yaml");
+            ObjectMapper mapper = new ObjectMapper();
+            BundledJsonNode expected = bundle("multifile-petstore", "openapi.yaml");
+
+            Bundle bundled = new BundleCache(cacheDir).bundle(workspace, root);
+            assertEquals(expected.at(""), mapper.readTree(new Serializer().serialize(bundled.node)));
+
+            // stored bundle is returned by another instance
+            BundleCache cache = new BundleCache(cacheDir);
+            Bundle cached = cache.bundle(workspace, root);
+            assertEquals(1, cache.getHits());
+            assertEquals(expected.at(""), mapper.readTree(new Serializer().serialize(cached.node)));
+            assertEquals("schemas/error.yaml", cached.mapping.find("/components/schemas/Error").uri.getPath());
+            assertNull(cached.mapping.find("/servers/0/url"));
+            assertEquals(Collections.singletonList("/components/schemas/Error"),
+                    cached.mapping.findBundled(URI.create("schemas/error.yaml"), ""));
+
+            // changed files are bundled again
+            Files.write(dir.resolve("schemas/pet.yaml"), "    color:\n      type: string\n".getBytes(),
+                    StandardOpenOption.APPEND);
+            assertNull(cache.get(workspace, root));
+            assertTrue(new Serializer().serialize(cache.bundle(workspace, root).node).contains("\"color\""));
+            assertNotNull(cache.get(workspace, root));
+
+            // corrupted entries are ignored
+            try (Stream<Path> entries = Files.list(cacheDir)) {
+                entries.forEach(entry -> entry.toFile().delete());
+            }
+            assertNull(cache.get(workspace, root));
+            cache.bundle(workspace, root);
+            try (Stream<Path> entries = Files.list(cacheDir)) {
+                for (Path entry : (Iterable<Path>) entries::iterator) {
+                    Files.write(entry, "{\"version\": 1, ".getBytes(), StandardOpenOption.TRUNCATE_EXISTING);
+                }
+            }
+            assertNull(cache.get(workspace, root));
+
+            // failing to store a bundle still returns it
+            Path notDir = Files.createFile(cacheDir.resolve("file"));
+            BundleCache unwritable = new BundleCache(notDir.resolve("cache"));
+            assertEquals(new Serializer().serialize(cache.bundle(workspace, root).node),
+                    new Serializer().serialize(unwritable.bundle(workspace, root).node));
+            assertNull(unwritable.get(workspace, root));
+        } finally {
+            delete(dir);
+            delete(cacheDir);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import static com.xliic.openapi.bundler.TestBundler.copy;
+import static com.xliic.openapi.bundler.TestBundler.delete;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.xliic.common.FileSystemWorkspace;
+
+import org.junit.jupiter.api.Test;
+
+public class BundleWatcherTest {
+    @Test
+    void testWatcher() throws IOException, InterruptedException {
+        Path dir = copy("multifile-petstore");
+        try {
+            FileSystemWorkspace workspace = new FileSystemWorkspace(dir);
+            IncrementalBundler bundler = new IncrementalBundler(new Parser(workspace), new Serializer(),
+                    workspace.resolve("openapi.yaml"));
+            LinkedBlockingQueue<Object> results = new LinkedBlockingQueue<>();
+            try (BundleWatcher watcher = new BundleWatcher(bundler, new BundleWatcher.Handler() {
+                @Override
+                public void bundled(Bundle bundle) {
+                    results.add(bundle);
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    results.add(e);
+                }
+            })) {
+                watcher.start();
+                assertTrue(results.poll() instanceof Bundle);
+
+                Files.write(dir.resolve("schemas/pet.yaml"), "    color:\n      type: string\n".getBytes(),
+                        StandardOpenOption.APPEND);
+                Object result = results.poll(30, TimeUnit.SECONDS);
+                assertTrue(result instanceof Bundle);
+                assertTrue(new Serializer().serialize(((Bundle) result).node).contains("\"color\""));
+
+                // files which are not part of the document are ignored
+                Files.write(dir.resolve("schemas/other.yaml"), "type: string\n".getBytes());
+                assertNull(results.poll(1, TimeUnit.SECONDS));
+            }
+
+            // failing handlers don't stop the watcher, and may close it
+            AtomicReference<BundleWatcher> current = new AtomicReference<>();
+            AtomicInteger failures = new AtomicInteger();
+            try (BundleWatcher watcher = new BundleWatcher(bundler, new BundleWatcher.Handler() {
+                @Override
+                public void bundled(Bundle bundle) {
+                    if (current.get() != null) {
+                        throw new IllegalStateException("bundled");
+                    }
+                }
+
+                @Override
+                public void failed(Exception e) {
+                    results.add(e);
+                    if (failures.incrementAndGet() == 2) {
+                        try {
+                            current.get().close();
+                        } catch (IOException ioe) {
+                            throw new UncheckedIOException(ioe);
+                        }
+                        results.add("closed");
+                    }
+                    throw new IllegalStateException("failed");
+                }
+            })) {
+                watcher.start();
+                current.set(watcher);
+                for (String color : new String[] { "red", "blue" }) {
+                    Files.write(dir.resolve("schemas/pet.yaml"), ("      default: " + color + "\n").getBytes(),
+                            StandardOpenOption.APPEND);
+                    assertTrue(results.poll(30, TimeUnit.SECONDS) instanceof IllegalStateException);
+                }
+                assertEquals("closed", results.poll(30, TimeUnit.SECONDS));
+            }
+        } finally {
+            delete(dir);
+        }
+    }
+}
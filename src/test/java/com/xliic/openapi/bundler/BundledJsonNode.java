@@ -6,6 +6,8 @@
 package com.xliic.openapi.bundler;
 
 import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.util.List;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
@@ -25,4 +27,8 @@ public class BundledJsonNode {
     public Mapping.Location original(String pointer) throws UnsupportedEncodingException {
         return this.mapping.find(pointer);
     }
+
+    public List<String> bundled(String uri, String pointer) {
+        return this.mapping.findBundled(URI.create(uri), pointer);
+    }
 }
\ No newline at end of file
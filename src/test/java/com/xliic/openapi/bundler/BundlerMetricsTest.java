@@ -0,0 +1,69 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.xliic.common.WorkspaceException;
+
+import org.junit.jupiter.api.Test;
+
+public class BundlerMetricsTest {
+    @Test
+    void testMetrics() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            BundlingException, WorkspaceException {
+        TestWorkspace workspace = new TestWorkspace("multifile-petstore");
+        BundlerMetrics metrics = new BundlerMetrics();
+        List<String[]> references = Collections.synchronizedList(new ArrayList<>());
+        Parser.Options parserOptions = new Parser.Options();
+        parserOptions.setListener(BundlerListener.all(metrics, new BundlerListener() {
+            @Override
+            public void resolveFinished(Reference reference) {
+                assertNull(reference.getFailure());
+                references.add(new String[] { reference.getLocation().toString(), reference.getPointer().getValue(),
+                        reference.getRef() });
+            }
+        }));
+        Serializer.Options serializerOptions = new Serializer.Options();
+        serializerOptions.setListener(metrics);
+        Parser parser = new Parser(workspace, parserOptions);
+        Serializer serializer = new Serializer(serializerOptions);
+
+        Document document = parser.parse(workspace.resolve("openapi.yaml"));
+        Bundler bundler = new Bundler(parser, serializer);
+        bundler.bundle(document);
+        String bundled = serializer.serialize(document);
+
+        assertEquals(document.parts.size(), metrics.getFilesLoaded());
+        assertEquals(0, metrics.getFilesFailed());
+        assertTrue(metrics.getSizeLoaded() > 0);
+        assertTrue(metrics.getRefs() > 0);
+        assertEquals(0, metrics.getUnresolved());
+        assertEquals(bundler.getInventory().size(), metrics.getInventorySize());
+        assertEquals(bundler.getResolutionCache().getHits(), metrics.getResolutionCacheHits());
+        assertEquals(bundled.length(), metrics.getSerializedSize());
+        assertTrue(metrics.getReport().contains("inventory: " + bundler.getInventory().size() + " entries"));
+        assertEquals(metrics.getResolved(), references.size());
+        for (String[] reference : references) {
+            assertEquals(reference[2],
+                    parser.readTree(URI.create(reference[0])).at(reference[1] + "/$ref").textValue());
+        }
+
+        metrics.reset();
+        assertEquals(0, metrics.getFilesLoaded());
+        assertEquals(0, metrics.getSerializedSize());
+    }
+}
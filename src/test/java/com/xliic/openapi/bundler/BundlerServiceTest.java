@@ -0,0 +1,64 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import static com.xliic.openapi.bundler.TestBundler.bundle;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xliic.common.WorkspaceException;
+
+import org.junit.jupiter.api.Test;
+
+public class BundlerServiceTest {
+    @Test
+    void testService() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            ExecutionException, BundlingException, WorkspaceException {
+        String[][] files = { { "multifile-petstore", "openapi.yaml" }, { "circular", "simple-external.yaml" },
+                { "circular", "two-level.yaml" }, { "minimal", "openapi30.yaml" } };
+        List<URI> roots = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String[] file = files[i % files.length];
+            roots.add(new TestWorkspace(file[0]).resolve(file[1]));
+        }
+        roots.add(new TestWorkspace("broken").resolve("external-not-exist.yaml"));
+
+        BundlerService.Options options = new BundlerService.Options();
+        options.setThreads(4);
+        options.setMaxPending(2);
+        List<CompletableFuture<Bundle>> futures;
+        try (BundlerService service = new BundlerService(new Parser(new TestWorkspace("")), new Serializer(),
+                options)) {
+            futures = service.bundle(roots);
+        }
+
+        ObjectMapper mapper = new ObjectMapper();
+        for (int i = 0; i < files.length; i++) {
+            BundledJsonNode expected = bundle(files[i][0], files[i][1]);
+            for (int j = i; j < 20; j += files.length) {
+                Bundle bundle = futures.get(j).get();
+                assertEquals(roots.get(j), bundle.root);
+                assertEquals(expected.at(""), mapper.readTree(new Serializer().serialize(bundle.node)));
+            }
+        }
+
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> {
+            futures.get(20).get();
+        });
+        assertTrue(ex.getCause() instanceof BundlingException);
+    }
+}
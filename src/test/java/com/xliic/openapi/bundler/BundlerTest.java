@@ -5,47 +5,29 @@
 
 package com.xliic.openapi.bundler;
 
+import static com.xliic.openapi.bundler.TestBundler.bundle;
+import static com.xliic.openapi.bundler.TestBundler.bundleCopy;
+import static com.xliic.openapi.bundler.TestBundler.findFailure;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.xliic.common.WorkspaceException;
 import com.xliic.openapi.bundler.Mapping.Location;
 
 import org.junit.jupiter.api.Test;
 
 public class BundlerTest {
-    BundledJsonNode bundle(String dirname, String filename) throws JsonProcessingException, IOException,
-            URISyntaxException, InterruptedException, BundlingException, WorkspaceException {
-        TestWorkspace workspace = new TestWorkspace(dirname);
-        Parser parser = new Parser(workspace);
-        Serializer serializer = new Serializer();
-        Bundler bundler = new Bundler(parser, serializer);
-        Document document = parser.parse(workspace.resolve(filename));
-        Mapping mapping = bundler.bundle(document);
-        String json = serializer.serialize(document);
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode jsonNode = mapper.readTree(json);
-        return new BundledJsonNode(jsonNode, mapping);
-    }
-
-    ReferenceResolutionFailure findFailure(BundlingException ex, String file, String pointer) {
-        for (ReferenceResolutionFailure failure : ex.getFailures()) {
-            if (failure.sourceFile.toString().endsWith(file) && failure.sourcePointer.equals(pointer)) {
-                return failure;
-            }
-        }
-        return null;
-    }
-
     @Test
     void testBundling() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
             BundlingException, WorkspaceException {
@@ -72,6 +54,36 @@ public class BundlerTest {
         assertNull(bundled.original("/servers/0/url"));
     }
 
+    @Test
+    void testReverseMapping() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            BundlingException, WorkspaceException {
+        BundledJsonNode bundled = bundle("multifile-petstore", "openapi.yaml");
+        // a change inside of a file maps to the bundled values containing it
+        assertTrue(bundled.bundled("schemas/error.yaml", "/properties/code")
+                .contains("/components/schemas/Error/properties/code"));
+        // and a change of a whole file to everything coming from it
+        assertTrue(bundled.bundled("schemas/error.yaml", "").contains("/components/schemas/Error"));
+        assertTrue(bundled.bundled("schemas/unknown.yaml", "").isEmpty());
+
+        // every mapped pointer is found back from its original location
+        ArrayDeque<String> pointers = new ArrayDeque<>(Collections.singletonList(""));
+        int mapped = 0;
+        while (!pointers.isEmpty()) {
+            String pointer = pointers.pop();
+            Location location = bundled.original(pointer);
+            if (location != null) {
+                assertTrue(bundled.bundled(location.uri.toString(), location.pointer).contains(pointer), pointer);
+                mapped++;
+            }
+            JsonNode node = bundled.at(pointer);
+            Iterator<String> names = node.fieldNames();
+            while (names.hasNext()) {
+                pointers.push(pointer + "/" + names.next().replace("~", "~0").replace("/", "~1"));
+            }
+        }
+        assertTrue(mapped > 0);
+    }
+
     @Test
     void testCircular() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
             BundlingException, WorkspaceException {
@@ -232,4 +244,48 @@ public class BundlerTest {
         BundledJsonNode bundled30 = bundle("minimal", "openapi30.yaml");
         assertNotNull(bundled30.at("/components/schemas/FooSchema/type"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testNotInPlace() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            BundlingException, WorkspaceException {
+        Bundler.Options options = new Bundler.Options();
+        options.setInPlace(false);
+
+        String[][] files = { { "multifile-petstore", "openapi.yaml" }, { "circular", "simple-external.yaml" },
+                { "circular", "two-level.yaml" }, { "circular", "multiple-ref-traversal.yml" },
+                { "simple", "indirect.yaml" }, { "minimal", "swagger20.yaml" }, { "minimal", "openapi30.yaml" } };
+
+        for (String[] file : files) {
+            BundledJsonNode inPlace = bundle(file[0], file[1]);
+            BundledJsonNode copied = bundleCopy(file[0], file[1], options);
+            assertEquals(inPlace.at(""), copied.at(""));
+        }
+
+        // parsed parts are left untouched
+        TestWorkspace workspace = new TestWorkspace("multifile-petstore");
+        Parser parser = new Parser(workspace);
+        Document document = parser.parse(workspace.resolve("openapi.yaml"));
+        Bundler bundler = new Bundler(parser, new Serializer(), options);
+        bundler.bundle(document);
+        for (Document.Part part : document.parts.values()) {
+            assertEquals(parser.readTree(part.location), part.node);
+        }
+        assertEquals("#/components/schemas/Pets", bundler.getBundled()
+                .at("/paths/~1pets/get/responses/200/content/application~1json/schema/$ref").textValue());
+        // unchanged subtrees are shared
+        assertTrue(document.root.node.get("info") == bundler.getBundled().get("info"));
+    }
+
+    @Test
+    void testRemapInside() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            BundlingException, WorkspaceException {
+        BundledJsonNode bundled = bundle("remap", "openapi.yaml");
+        // references inside of a remapped target point into it, even if other
+        // targets sharing its prefix were remapped in between
+        assertEquals("#/components/schemas/external.yaml-components-schemas-A/properties/x",
+                bundled.at("/paths/~1a-x/get/responses/200/content/application~1json/schema/$ref").textValue());
+        assertEquals("#/components/schemas/external.yaml-components-schemas-A-B",
+                bundled.at("/paths/~1a-b/get/responses/200/content/application~1json/schema/$ref").textValue());
+        assertEquals(2, bundled.at("/components/schemas").size());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import static com.xliic.openapi.bundler.TestBundler.bundle;
+import static com.xliic.openapi.bundler.TestBundler.bundleCopy;
+import static com.xliic.openapi.bundler.TestBundler.copy;
+import static com.xliic.openapi.bundler.TestBundler.delete;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.xliic.common.FileSystemWorkspace;
+import com.xliic.common.WorkspaceException;
+
+import org.junit.jupiter.api.Test;
+
+public class DeduplicatorTest {
+    @Test
+    void testDeduplication() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            BundlingException, WorkspaceException {
+        Bundler.Options options = new Bundler.Options();
+        options.setDeduplication(true);
+        BundledJsonNode deduplicated = bundle("dedup", "openapi.yaml", options);
+
+        String price = "#/components/schemas/vendor-a.yaml-components-schemas-Price";
+        assertEquals(price, deduplicated
+                .at("/paths/~1a/get/responses/200/content/application~1json/schema/$ref").textValue());
+        // identical once references to identical schemas are merged
+        assertEquals(price, deduplicated
+                .at("/paths/~1b/get/responses/200/content/application~1json/schema/$ref").textValue());
+        assertTrue(deduplicated.at("/components/schemas/vendor-b.yaml-components-schemas-Price").isMissingNode());
+        assertTrue(deduplicated.at("/components/schemas/vendor-b.yaml-components-schemas-Money").isMissingNode());
+        assertNull(deduplicated.original("/components/schemas/vendor-b.yaml-components-schemas-Money"));
+        assertEquals(Collections.singletonList("/components/schemas/vendor-a.yaml-components-schemas-Money"),
+                deduplicated.bundled("vendor-b.yaml", "/components/schemas/Money"));
+        assertEquals(Collections.singletonList("/components/schemas/vendor-a.yaml-components-schemas-Money/properties/amount"),
+                deduplicated.bundled("vendor-b.yaml", "/components/schemas/Money/properties/amount"));
+        assertEquals(Collections.singletonList("/components/schemas/vendor-a.yaml-components-schemas-Money"),
+                deduplicated.bundled("vendor-a.yaml", "/components/schemas/Money"));
+        assertEquals("#/components/schemas/vendor-a.yaml-components-schemas-Money",
+                deduplicated.at("/components/schemas/vendor-a.yaml-components-schemas-Price/properties/value/$ref")
+                        .textValue());
+        // different schemas are kept
+        assertFalse(deduplicated.at("/components/schemas/vendor-a.yaml-components-schemas-Address").isMissingNode());
+        assertFalse(deduplicated.at("/components/schemas/vendor-b.yaml-components-schemas-Address").isMissingNode());
+
+        assertEquals(deduplicated.at(""), bundleCopy("dedup", "openapi.yaml", options).at(""));
+
+        // merged duplicates stay mapped in stored bundles
+        Path dir = copy("dedup");
+        Path cacheDir = Files.createTempDirectory("bundler");
+        try {
+            FileSystemWorkspace workspace = new FileSystemWorkspace(dir);
+            URI root = workspace.resolve("openapi.yaml");
+            new BundleCache(cacheDir, new Parser.Options(), options).bundle(workspace, root);
+            Bundle cached = new BundleCache(cacheDir, new Parser.Options(), options).get(workspace, root);
+            assertNotNull(cached);
+            assertEquals(Collections.singletonList("/components/schemas/vendor-a.yaml-components-schemas-Money"),
+                    cached.mapping.findBundled(URI.create("vendor-b.yaml"), "/components/schemas/Money"));
+        } finally {
+            delete(dir);
+            delete(cacheDir);
+        }
+    }
+}
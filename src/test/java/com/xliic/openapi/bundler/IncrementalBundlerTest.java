@@ -0,0 +1,148 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import static com.xliic.openapi.bundler.TestBundler.bundle;
+import static com.xliic.openapi.bundler.TestBundler.copy;
+import static com.xliic.openapi.bundler.TestBundler.delete;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xliic.common.FileSystemWorkspace;
+import com.xliic.common.WorkspaceException;
+import com.xliic.openapi.bundler.Mapping.Location;
+
+import org.junit.jupiter.api.Test;
+
+public class IncrementalBundlerTest {
+    @Test
+    void testUpdate() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            BundlingException, WorkspaceException {
+        Path dir = copy("multifile-petstore");
+        try {
+            FileSystemWorkspace workspace = new FileSystemWorkspace(dir);
+            BundlerMetrics metrics = new BundlerMetrics();
+            Parser.Options options = new Parser.Options();
+            options.setListener(metrics);
+            IncrementalBundler bundler = new IncrementalBundler(new Parser(workspace, options), new Serializer(),
+                    workspace.resolve("openapi.yaml"));
+            ObjectMapper mapper = new ObjectMapper();
+
+            Bundle bundle = bundler.bundle();
+            assertEquals(bundle("multifile-petstore", "openapi.yaml").at(""),
+                    mapper.readTree(new Serializer().serialize(bundle.node)));
+            URI pet = workspace.resolve("schemas/pet.yaml");
+            assertTrue(bundler.getFiles().contains(pet));
+
+            // only the changed file is read again
+            Files.write(dir.resolve("schemas/pet.yaml"), "    color:\n      type: string\n".getBytes(),
+                    StandardOpenOption.APPEND);
+            metrics.reset();
+            bundle = bundler.update(Collections.singleton(pet));
+            assertEquals(1, metrics.getFilesLoaded());
+            BundledJsonNode expected = bundle(workspace, "openapi.yaml", new Bundler.Options());
+            assertEquals(expected.at(""), mapper.readTree(new Serializer().serialize(bundle.node)));
+            assertTrue(new Serializer().serialize(bundle.node).contains("\"color\""));
+
+            // changes to the root file keep the other files
+            URI root = workspace.resolve("openapi.yaml");
+            String text = new String(Files.readAllBytes(dir.resolve("openapi.yaml")), StandardCharsets.UTF_8);
+            Files.write(dir.resolve("openapi.yaml"),
+                    text.replace("Swagger Petstore", "Changed").getBytes(StandardCharsets.UTF_8));
+            metrics.reset();
+            bundle = bundler.update(Collections.singleton(root));
+            assertEquals(1, metrics.getFilesLoaded());
+            assertEquals("Changed", bundle.node.at("/info/title").asText());
+            assertEquals(expected.at("/paths"), mapper.readTree(new Serializer().serialize(bundle.node.at("/paths"))));
+
+            // deleted files fail to resolve until they are back
+            byte[] saved = Files.readAllBytes(dir.resolve("schemas/pet.yaml"));
+            Files.delete(dir.resolve("schemas/pet.yaml"));
+            assertThrows(BundlingException.class, () -> {
+                bundler.update(Collections.singleton(pet));
+            });
+            Files.write(dir.resolve("schemas/pet.yaml"), saved);
+            bundle = bundler.update(Collections.singleton(pet));
+            assertTrue(new Serializer().serialize(bundle.node).contains("\"color\""));
+        } finally {
+            delete(dir);
+        }
+    }
+
+    @Test
+    void testPatch() throws JsonProcessingException, IOException, URISyntaxException,
+            InterruptedException, BundlingException, WorkspaceException {
+        for (boolean treeShaking : new boolean[] { false, true }) {
+            Path dir = copy("multifile-petstore");
+            try {
+                FileSystemWorkspace workspace = new FileSystemWorkspace(dir);
+                BundlerMetrics metrics = new BundlerMetrics();
+                Parser.Options parserOptions = new Parser.Options();
+                parserOptions.setListener(metrics);
+                Bundler.Options options = new Bundler.Options();
+                options.setTreeShaking(treeShaking);
+                IncrementalBundler bundler = new IncrementalBundler(new Parser(workspace, parserOptions),
+                        new Serializer(), workspace.resolve("openapi.yaml"), options);
+                ObjectMapper mapper = new ObjectMapper();
+                Bundle first = bundler.bundle();
+                String serialized = new Serializer().serialize(first.node);
+
+                // values changed without changing the $refs are patched
+                replace(dir.resolve("schemas/pet.yaml"), "format: int64", "format: int32");
+                metrics.reset();
+                Bundle bundle = bundler.update(Collections.singleton(workspace.resolve("schemas/pet.yaml")));
+                assertEquals(0, metrics.getRefs());
+                assertEquals(bundle(workspace, "openapi.yaml", options).at(""),
+                        mapper.readTree(new Serializer().serialize(bundle.node)));
+                assertTrue(new Serializer().serialize(bundle.node).contains("int32"));
+
+                // the bundled values of the $refs in a changed file are kept
+                replace(dir.resolve("paths/pets/get.yaml"), "List all pets", "List the pets");
+                metrics.reset();
+                bundle = bundler.update(Collections.singleton(workspace.resolve("paths/pets/get.yaml")));
+                assertEquals(0, metrics.getRefs());
+                BundledJsonNode expected = bundle(workspace, "openapi.yaml", options);
+                assertEquals(expected.at(""), mapper.readTree(new Serializer().serialize(bundle.node)));
+                Location location = bundle.mapping.find("/paths/~1pets/get/summary");
+                assertEquals(expected.original("/paths/~1pets/get/summary").uri, location.uri);
+                assertEquals(expected.original("/paths/~1pets/get/summary").pointer, location.pointer);
+
+                // new $refs need a crawl
+                Files.write(dir.resolve("schemas/pet.yaml"),
+                        "    error:\n      $ref: error.yaml\n".getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.APPEND);
+                metrics.reset();
+                bundle = bundler.update(Collections.singleton(workspace.resolve("schemas/pet.yaml")));
+                assertTrue(metrics.getRefs() > 0);
+                assertEquals(bundle(workspace, "openapi.yaml", options).at(""),
+                        mapper.readTree(new Serializer().serialize(bundle.node)));
+
+                // previous bundles are left untouched
+                assertEquals(serialized, new Serializer().serialize(first.node));
+            } finally {
+                delete(dir);
+            }
+        }
+    }
+
+    private static void replace(Path file, String target, String replacement) throws IOException {
+        String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        assertTrue(text.contains(target));
+        Files.write(file, text.replace(target, replacement).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -6,29 +6,39 @@
 package com.xliic.openapi.bundler;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.HashSet;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.exc.StreamConstraintsException;
+import com.xliic.common.ContentType;
+import com.xliic.common.WorkspaceContent;
 import com.xliic.common.WorkspaceException;
 import com.xliic.openapi.bundler.Inventory.Entry;
 
 import org.junit.jupiter.api.Test;
 
 public class InventoryTest {
-    Inventory parse(String dirname, String filename) throws JsonProcessingException, IOException, URISyntaxException,
-            InterruptedException, BundlingException, WorkspaceException {
+    Bundler crawl(String dirname, String filename) throws JsonProcessingException, IOException,
+            URISyntaxException, InterruptedException, BundlingException, WorkspaceException {
         TestWorkspace workspace = new TestWorkspace(dirname);
         Parser parser = new Parser(workspace);
         Serializer serializer = new Serializer();
         Bundler bundler = new Bundler(parser, serializer);
         Document document = parser.parse(workspace.resolve(filename));
-        bundler.crawl(document.root, document.root.node, null, new JsonPath(), new JsonPath(), new HashSet<URI>());
-        return bundler.getInventory();
+        bundler.crawl(document.root, document.root.node, null, new JsonPath(), new JsonPath());
+        return bundler;
+    }
+
+    Inventory parse(String dirname, String filename) throws JsonProcessingException, IOException, URISyntaxException,
+            InterruptedException, BundlingException, WorkspaceException {
+        return crawl(dirname, filename).getInventory();
     }
 
     Inventory.Entry find(Inventory inventory, String pointer) throws UnsupportedEncodingException {
@@ -121,4 +131,127 @@ public class InventoryTest {
         assertEquals("foofoo", bar.value.textValue());
         assertEquals("foofoo", baz.value.textValue());
     }
-}
\ No newline at end of file
+
+    @Test
+    void lookup() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            BundlingException, WorkspaceException {
+        Inventory inventory = parse("simple", "two-refs.yaml");
+        Entry bar = find(inventory, "/bar");
+        assertEquals(bar, inventory.get(bar.parent, "bar"));
+        assertEquals(2, inventory.get(bar.file, new JsonPointer("/foo")).size());
+        assertEquals(0, inventory.get(bar.file, new JsonPointer("/bar")).size());
+    }
+
+    @Test
+    void resolutionCache() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            BundlingException, WorkspaceException {
+        // two $refs to #/foo in two-refs.yaml, the second one is served from the cache
+        ResolutionCache cache = crawl("simple", "two-refs.yaml").getResolutionCache();
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+
+        // resolving /bar in indirect.yaml also resolves the indirect #/foo,
+        // so /baz and /ext are served from the cache
+        Bundler bundler = crawl("simple", "indirect.yaml");
+        assertEquals(2, bundler.getResolutionCache().getMisses());
+        assertEquals(2, bundler.getResolutionCache().getHits());
+        Inventory inventory = bundler.getInventory();
+        assertEquals(1, find(inventory, "/bar").indirections);
+        assertEquals(0, find(inventory, "/baz").indirections);
+        assertEquals("foo", find(inventory, "/ext").path.get(0));
+    }
+
+    @Test
+    void cycles() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            BundlingException, WorkspaceException {
+        // User refers to itself through its items
+        Bundler bundler = crawl("circular", "two-level.yaml");
+        ReferenceGraph graph = bundler.getReferenceGraph();
+        URI file = new TestWorkspace("circular").resolve("two-level.yaml");
+        assertTrue(graph.isCyclic(graph.find(file, "/definitions/User")));
+        assertTrue(graph.isCyclic(graph.find(file, "/definitions/User/items")));
+        assertFalse(graph.isCyclic(graph.find(file, "")));
+
+        bundler = crawl("simple", "two-refs.yaml");
+        graph = bundler.getReferenceGraph();
+        file = new TestWorkspace("simple").resolve("two-refs.yaml");
+        assertFalse(graph.isCyclic(graph.find(file, "/foo")));
+        assertFalse(graph.isCyclic(graph.find(file, "/bar")));
+    }
+
+    // document with a $ref to #/foo nested the given number of levels deep, in
+    // alternating objects and arrays
+    static String nested(int levels) {
+        StringBuilder text = new StringBuilder("{\"foo\": \"foofoo\", ");
+        StringBuilder closing = new StringBuilder();
+        for (int i = 0; i < levels; i++) {
+            if (i % 2 == 0) {
+                text.append("\"bar\": {");
+                closing.append('}');
+            } else {
+                text.append("\"baz\": [{");
+                closing.append("]}");
+            }
+        }
+        text.append("\"ref\": {\"$ref\": \"#/foo\"}");
+        text.append(closing.reverse()).append('}');
+        return text.toString();
+    }
+
+    static TestWorkspace nestedWorkspace(String data) throws IOException {
+        return new TestWorkspace("simple") {
+            @Override
+            public WorkspaceContent read(URI uri) {
+                return new WorkspaceContent(data, uri.getPath().endsWith(".json") ? ContentType.JSON : ContentType.YAML);
+            }
+        };
+    }
+
+    @Test
+    void deeplyNested() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            BundlingException, WorkspaceException {
+        int levels = 20000;
+        TestWorkspace workspace = nestedWorkspace(nested(levels));
+        Parser.Options options = new Parser.Options();
+        options.setMaxNestingDepth(100000);
+
+        // JSON is also a YAML flow mapping, so the same text exercises both parsers
+        for (String filename : new String[] { "nested.json", "nested.yaml" }) {
+            Parser parser = new Parser(workspace, options);
+            Bundler bundler = new Bundler(parser, new Serializer());
+            Document document = parser.parse(workspace.resolve(filename));
+            bundler.crawl(document.root, document.root.node, null, new JsonPath(), new JsonPath());
+
+            Entry entry = bundler.getInventory().iterator().next();
+            assertEquals(1, bundler.getInventory().size());
+            assertEquals(levels + levels / 2 + 1, entry.depth);
+            assertEquals("ref", entry.key);
+            assertTrue(entry.pathFromRoot.toPointer().getValue().startsWith("/bar/baz/0/bar/baz/0/"));
+            assertEquals("foofoo", entry.value.textValue());
+        }
+    }
+
+    @Test
+    void deeplyNestedBundle() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            BundlingException, WorkspaceException {
+        // 2000 levels of alternating objects and arrays nest 3000 deep
+        TestWorkspace workspace = nestedWorkspace(nested(2000));
+        URI file = workspace.resolve("nested.json");
+        // parser and serializer limits are opt-in
+        assertThrows(StreamConstraintsException.class, () -> new Parser(workspace).parse(file));
+
+        Parser.Options parserOptions = new Parser.Options();
+        parserOptions.setMaxNestingDepth(5000);
+        Serializer.Options serializerOptions = new Serializer.Options();
+        serializerOptions.setPrettyPrint(false);
+        Parser parser = new Parser(workspace, parserOptions);
+        Document document = parser.parse(file);
+        new Bundler(parser, new Serializer(serializerOptions)).bundle(document);
+        assertThrows(StreamConstraintsException.class, () -> new Serializer(serializerOptions).serialize(document));
+
+        serializerOptions.setMaxNestingDepth(5000);
+        String bundled = new Serializer(serializerOptions).serialize(document);
+        assertTrue(bundled.startsWith("{\"foo\":\"foofoo\",\"bar\":{\"baz\":[{\"bar\":"));
+        assertTrue(bundled.contains("\"ref\":{\"$ref\":\"#/foo\"}"));
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class JsonPathTest {
+
+    @Test
+    void testPath() {
+        JsonPath base = new JsonPath("components", "schemas");
+        JsonPath pet = base.withKey("Pet");
+        JsonPath error = base.withKey("Error");
+
+        assertEquals(Arrays.asList("components", "schemas", "Pet"), pet);
+        assertEquals(Arrays.asList("components", "schemas", "Pet").hashCode(), pet.hashCode());
+        assertEquals(new JsonPath("components", "schemas", "Pet"), pet);
+        assertEquals(2, base.size());
+        assertEquals("Pet", pet.get(2));
+        assertEquals(Arrays.asList("schemas", "Pet"), pet.subList(1, 3));
+        assertTrue(pet.isSubPathOf(base));
+        assertTrue(pet.isSubPathOf(new JsonPath("components")));
+        assertFalse(pet.isSubPathOf(error));
+        assertFalse(base.isSubPathOf(pet));
+        assertThrows(UnsupportedOperationException.class, () -> pet.add("name"));
+        assertThrows(UnsupportedOperationException.class, () -> pet.subList(0, 2).set(0, "paths"));
+        pet.toArray()[0] = "paths";
+        assertEquals("components", pet.get(0));
+        assertThrows(IndexOutOfBoundsException.class, () -> pet.get(3));
+        assertSame(pet.toPointer(), pet.toPointer());
+        assertSame(JsonPath.index(1), pet.withKey(JsonPath.index(1)).get(3));
+    }
+
+    @Test
+    void testPointer() {
+        assertEquals(new JsonPath(), new JsonPointer("").getJsonPath());
+        assertEquals(new JsonPath(""), new JsonPointer("/").getJsonPath());
+        assertEquals(new JsonPath("paths", "/pets/{id}", "a~b", ""),
+                new JsonPointer("/paths/~1pets~1{id}/a~0b/").getJsonPath());
+        assertEquals("/paths/~1pets~1{id}/a~0b/",
+                new JsonPath("paths", "/pets/{id}", "a~b", "").toPointer().getValue());
+        assertEquals("", new JsonPath().toPointer().getValue());
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.xliic.common.WorkspaceException;
+
+import org.junit.jupiter.api.Test;
+
+public class PartCacheTest {
+    @Test
+    void testPartCache() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            BundlingException, WorkspaceException {
+        TestWorkspace workspace = new TestWorkspace("multifile-petstore");
+        Parser.Options options = new Parser.Options();
+        options.setPartCache(new PartCache(1024 * 1024));
+        Parser parser = new Parser(workspace, options);
+        Serializer serializer = new Serializer();
+
+        String[] bundled = new String[2];
+        for (int i = 0; i < bundled.length; i++) {
+            Document document = parser.parse(workspace.resolve("openapi.yaml"));
+            new Bundler(parser, serializer).bundle(document);
+            bundled[i] = serializer.serialize(document);
+        }
+
+        // second run gets every file from the cache, unmodified by the first run
+        assertEquals(bundled[0], bundled[1]);
+        assertTrue(options.getPartCache().getHits() > 0);
+        assertEquals(options.getPartCache().getHits(), options.getPartCache().getMisses());
+
+        // entries are evicted once the cache is full
+        PartCache small = new PartCache(1);
+        small.put(workspace.resolve("a.yaml"), "a", serializer.createObjectNode(), 1);
+        small.put(workspace.resolve("b.yaml"), "b", serializer.createObjectNode(), 1);
+        assertNull(small.get(workspace.resolve("a.yaml"), "a"));
+        assertNotNull(small.get(workspace.resolve("b.yaml"), "b"));
+        assertNull(small.get(workspace.resolve("b.yaml"), "c"));
+        assertEquals(1, small.getEvictions());
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import static com.xliic.openapi.bundler.TestBundler.bundle;
+import static com.xliic.openapi.bundler.TestBundler.findFailure;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.xliic.common.WorkspaceContent;
+import com.xliic.common.WorkspaceException;
+
+import org.junit.jupiter.api.Test;
+
+public class PrefetcherTest {
+    @Test
+    void testPrefetch() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            BundlingException, WorkspaceException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Bundler.Options options = new Bundler.Options();
+            options.setPrefetchExecutor(executor);
+
+            BundledJsonNode prefetched = bundle("multifile-petstore", "openapi.yaml", options);
+            BundledJsonNode sequential = bundle("multifile-petstore", "openapi.yaml");
+            assertEquals(sequential.at(""), prefetched.at(""));
+            assertEquals("schemas/error.yaml", prefetched.original("/components/schemas/Error").uri.getPath());
+
+            BundlingException ex = assertThrows(BundlingException.class, () -> {
+                bundle("broken/multi-file-petstore", "openapi.yaml", options);
+            });
+            assertEquals(3, ex.getFailures().size());
+            assertTrue(findFailure(ex, "schemas/index.yaml", "/Error/$ref").message
+                    .contains("Failed to load external file:"));
+        } finally {
+            executor.shutdown();
+        }
+
+        // prefetching is over once bundled, pets.yaml refers to stores.yaml which
+        // the selection doesn't need
+        ExecutorService slow = Executors.newFixedThreadPool(4);
+        try {
+            Bundler.Options options = new Bundler.Options();
+            options.setPrefetchExecutor(command -> slow.execute(() -> {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                command.run();
+            }));
+            TestWorkspace workspace = new TestWorkspace("partial") {
+                @Override
+                public WorkspaceContent read(URI uri) throws IOException, InterruptedException {
+                    WorkspaceContent content = super.read(uri);
+                    if (uri.getPath().endsWith("pets.yaml")) {
+                        return new WorkspaceContent(content.getText()
+                                + "    Store:\n      $ref: \"stores.yaml#/components/schemas/Store\"\n", content.type);
+                    }
+                    return content;
+                }
+            };
+            Parser parser = new Parser(workspace);
+            Document document = parser.parse(workspace.resolve("openapi.yaml"));
+            new Bundler(parser, new Serializer(), options).bundle(document,
+                    Collections.singletonList(new JsonPointer("/paths/~1pets/get")));
+            int parts = document.parts.size();
+            slow.shutdown();
+            assertTrue(slow.awaitTermination(30, TimeUnit.SECONDS));
+            assertEquals(parts, document.parts.size());
+            assertTrue(document.loading.values().stream().allMatch(CompletableFuture::isDone));
+        } finally {
+            slow.shutdownNow();
+        }
+    }
+}
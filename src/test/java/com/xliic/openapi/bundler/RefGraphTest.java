@@ -0,0 +1,37 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+
+import org.junit.jupiter.api.Test;
+
+public class RefGraphTest {
+    private static final URI FILE = URI.create("file:/openapi.yaml");
+
+    @Test
+    void testIds() {
+        RefGraph graph = new RefGraph();
+        int foo = graph.getId(FILE, new JsonPointer("/foo"));
+        assertEquals(foo, graph.getId(FILE, new JsonPointer("/foo")));
+        assertEquals(foo, graph.findId(FILE, new JsonPointer("/foo")));
+        assertEquals(-1, graph.findId(FILE, new JsonPointer("/bar")));
+        assertEquals(-1, graph.findId(URI.create("file:/other.yaml"), new JsonPointer("/foo")));
+        assertEquals("/foo", graph.getPointer(foo).getValue());
+
+        assertTrue(graph.enter(foo));
+        assertFalse(graph.enter(foo));
+        graph.leave(foo);
+        assertTrue(graph.enter(foo));
+
+        assertTrue(graph.markCrawled(foo));
+        assertFalse(graph.markCrawled(foo));
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xliic.common.WorkspaceException;
+
+import org.junit.jupiter.api.Test;
+
+public class ReferenceGraphTest {
+    private static final URI FILE = URI.create("file:/openapi.yaml");
+
+    @Test
+    void testBundled() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            BundlingException, WorkspaceException {
+        TestWorkspace workspace = new TestWorkspace("multifile-petstore");
+        Parser parser = new Parser(workspace);
+        Bundler bundler = new Bundler(parser, new Serializer());
+        URI root = workspace.resolve("openapi.yaml");
+        bundler.bundle(parser.parse(root));
+        ReferenceGraph graph = bundler.getReferenceGraph();
+
+        URI path = workspace.resolve("paths/pets/path.yaml");
+        assertTrue(graph.getFileDependencies(root).contains(path));
+        assertTrue(graph.getFileDependents(path).contains(root));
+        assertTrue(graph.getFanOut(graph.find(root, "")) > 0);
+        assertEquals(-1, graph.find(root, "/nothing"));
+        assertTrue(graph.getCycles().isEmpty());
+        for (int i = 0; i < graph.size(); i++) {
+            assertEquals(graph.getFanOut(i), graph.getDependencies(i).length);
+            for (int dependency : graph.getDependencies(i)) {
+                final int location = i;
+                assertTrue(Arrays.stream(graph.getDependents(dependency)).anyMatch(d -> d == location));
+            }
+        }
+
+        JsonNode json = new ObjectMapper().readTree(graph.toJson());
+        assertEquals(graph.getFiles().size(), json.get("files").size());
+        assertEquals(graph.size(), json.get("locations").size());
+        assertEquals(graph.getEdgeCount(), json.get("edges").size());
+        assertTrue(graph.toDot().startsWith("digraph"));
+
+        // User refers to itself through its items
+        workspace = new TestWorkspace("circular");
+        parser = new Parser(workspace);
+        bundler = new Bundler(parser, new Serializer());
+        root = workspace.resolve("two-level.yaml");
+        bundler.bundle(parser.parse(root));
+        graph = bundler.getReferenceGraph();
+        int user = graph.find(root, "/definitions/User");
+        assertTrue(graph.isCyclic(user));
+        assertEquals(1, graph.getCycles().size());
+        assertTrue(Arrays.stream(graph.getCycles().get(0)).anyMatch(location -> location == user));
+        assertEquals(1, new ObjectMapper().readTree(graph.toJson()).get("cycles").size());
+    }
+
+    @Test
+    void testCycles() {
+        RefGraph graph = new RefGraph();
+        int[] ids = new int[7];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = graph.getId(FILE, new JsonPointer("/" + i));
+        }
+        // 0 -> 1 -> 2 -> 0 is a cycle, 3 refers to it, 4 refers to itself
+        // and 5 -> 6 is not a cycle
+        graph.addEdge(ids[0], ids[1]);
+        graph.addEdge(ids[1], ids[2]);
+        graph.addEdge(ids[2], ids[0]);
+        graph.addEdge(ids[3], ids[1]);
+        graph.addEdge(ids[4], ids[4]);
+        graph.addEdge(ids[5], ids[6]);
+
+        ReferenceGraph cycles = new ReferenceGraph(graph);
+        assertTrue(cycles.isCyclic(ids[0]));
+        assertTrue(cycles.isCyclic(ids[1]));
+        assertTrue(cycles.isCyclic(ids[2]));
+        assertFalse(cycles.isCyclic(ids[3]));
+        assertTrue(cycles.isCyclic(ids[4]));
+        assertFalse(cycles.isCyclic(ids[5]));
+        assertFalse(cycles.isCyclic(ids[6]));
+
+        // closing 5 -> 6 -> 5 is picked up by the next ReferenceGraph
+        graph.addEdge(ids[6], ids[5]);
+        assertTrue(new ReferenceGraph(graph).isCyclic(ids[5]));
+    }
+
+    @Test
+    void testDeepChain() {
+        // long chains don't overflow the call stack
+        RefGraph graph = new RefGraph();
+        int levels = 100000;
+        int first = graph.getId(FILE, new JsonPointer("/0"));
+        int previous = first;
+        for (int i = 1; i < levels; i++) {
+            int id = graph.getId(FILE, new JsonPointer("/" + i));
+            graph.addEdge(previous, id);
+            previous = id;
+        }
+        assertFalse(new ReferenceGraph(graph).isCyclic(first));
+        graph.addEdge(previous, first);
+        ReferenceGraph cycles = new ReferenceGraph(graph);
+        assertTrue(cycles.isCyclic(first));
+        assertTrue(cycles.isCyclic(previous));
+    }
+}
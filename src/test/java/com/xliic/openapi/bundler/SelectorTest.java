@@ -0,0 +1,102 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xliic.common.WorkspaceException;
+
+import org.junit.jupiter.api.Test;
+
+public class SelectorTest {
+    @Test
+    void testPartial() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            BundlingException, WorkspaceException {
+        List<URI> loaded = Collections.synchronizedList(new ArrayList<>());
+        Parser.Options parserOptions = new Parser.Options();
+        parserOptions.setListener(new BundlerListener() {
+            @Override
+            public void loadStarted(URI uri) {
+                loaded.add(uri);
+            }
+        });
+        TestWorkspace workspace = new TestWorkspace("partial");
+        Parser parser = new Parser(workspace, parserOptions);
+        Serializer serializer = new Serializer();
+        Bundler.Options options = new Bundler.Options();
+        options.setInPlace(false);
+        Bundler bundler = new Bundler(parser, serializer, options);
+        Document document = parser.parse(workspace.resolve("openapi.yaml"));
+        Mapping mapping = bundler.bundle(document, Collections.singletonList(new JsonPointer("/paths/~1pets/get")));
+        BundledJsonNode bundled = new BundledJsonNode(
+                new ObjectMapper().readTree(serializer.serialize(bundler.getBundled())), mapping);
+
+        // only the selected operation and what it refers to
+        assertEquals(1, bundled.at("/paths").size());
+        assertEquals(2, bundled.at("/paths/~1pets").size());
+        assertEquals("#/components/parameters/tenant", bundled.at("/paths/~1pets/parameters/0/$ref").textValue());
+        assertEquals("#/components/schemas/pets.yaml-components-schemas-Pets",
+                bundled.at("/paths/~1pets/get/responses/200/content/application~1json/schema/$ref").textValue());
+        assertFalse(bundled.at("/components/schemas/pets.yaml-components-schemas-Pet").isMissingNode());
+        assertTrue(bundled.at("/components/schemas/NewPet").isMissingNode());
+        assertTrue(bundled.at("/components/schemas/Unused").isMissingNode());
+        assertFalse(bundled.at("/components/securitySchemes/apiKey").isMissingNode());
+        assertEquals("https://example.com", bundled.at("/servers/0/url").textValue());
+        assertNotNull(bundled.original("/components/schemas/pets.yaml-components-schemas-Pets"));
+        // stores.yaml is only referred to from what wasn't selected
+        assertEquals(2, loaded.size());
+        assertFalse(loaded.contains(workspace.resolve("stores.yaml")));
+        assertEquals(parser.readTree(document.root.location), document.root.node);
+
+        assertThrows(IllegalArgumentException.class, () -> new Bundler(parser, serializer, options).bundle(document,
+                Collections.singletonList(new JsonPointer("/components/schemas/NewPet"))));
+        assertThrows(IllegalArgumentException.class, () -> new Bundler(parser, serializer, options).bundle(document,
+                Collections.singletonList(new JsonPointer("/paths/~1cats/get"))));
+    }
+
+    @Test
+    void testPartialSelections() throws JsonProcessingException, IOException, URISyntaxException,
+            InterruptedException, BundlingException, WorkspaceException {
+        // partial bundles are never done in place, the default, so one parsed
+        // document can be bundled with several selections
+        TestWorkspace workspace = new TestWorkspace("partial");
+        Parser parser = new Parser(workspace);
+        Serializer serializer = new Serializer();
+        Document document = parser.parse(workspace.resolve("openapi.yaml"));
+
+        Bundler pets = new Bundler(parser, serializer);
+        pets.bundle(document, Collections.singletonList(new JsonPointer("/paths/~1pets/get")));
+        String bundledPets = serializer.serialize(pets.getBundled());
+
+        Bundler stores = new Bundler(parser, serializer);
+        Mapping mapping = stores.bundle(document, Collections.singletonList(new JsonPointer("/paths/~1stores")));
+        BundledJsonNode bundled = new BundledJsonNode(
+                new ObjectMapper().readTree(serializer.serialize(stores.getBundled())), mapping);
+
+        assertEquals(parser.readTree(document.root.location), document.root.node);
+        assertEquals(bundledPets, serializer.serialize(pets.getBundled()));
+        assertEquals(1, bundled.at("/paths").size());
+        assertEquals("#/components/schemas/stores.yaml-components-schemas-Stores",
+                bundled.at("/paths/~1stores/get/responses/200/content/application~1json/schema/$ref").textValue());
+        assertTrue(bundled.at("/components/schemas/pets.yaml-components-schemas-Pets").isMissingNode());
+        assertTrue(bundled.at("/components/parameters/tenant").isMissingNode());
+        assertFalse(new ObjectMapper().readTree(bundledPets)
+                .at("/components/schemas/pets.yaml-components-schemas-Pets").isMissingNode());
+    }
+}
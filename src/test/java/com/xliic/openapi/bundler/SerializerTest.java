@@ -0,0 +1,56 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xliic.common.WorkspaceException;
+
+import org.junit.jupiter.api.Test;
+
+public class SerializerTest {
+    @Test
+    void testStreaming() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            BundlingException, WorkspaceException {
+        TestWorkspace workspace = new TestWorkspace("multifile-petstore");
+        Parser parser = new Parser(workspace);
+        Serializer serializer = new Serializer();
+        Document document = parser.parse(workspace.resolve("openapi.yaml"));
+        new Bundler(parser, serializer).bundle(document);
+
+        String expected = serializer.serialize(document);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        serializer.serialize(document, out);
+        assertEquals(expected, new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+        StringWriter writer = new StringWriter();
+        serializer.serialize(document, writer);
+        assertEquals(expected, writer.toString());
+
+        ByteArrayOutputStream channelOut = new ByteArrayOutputStream();
+        serializer.serialize(document, Channels.newChannel(channelOut));
+        assertEquals(expected, new String(channelOut.toByteArray(), StandardCharsets.UTF_8));
+
+        Serializer.Options options = new Serializer.Options();
+        options.setPrettyPrint(false);
+        ByteArrayOutputStream compact = new ByteArrayOutputStream();
+        new Serializer(options).serialize(document, compact);
+        String json = new String(compact.toByteArray(), StandardCharsets.UTF_8);
+        assertFalse(json.contains("\n"));
+        assertEquals(new ObjectMapper().readTree(expected), new ObjectMapper().readTree(json));
+    }
+}
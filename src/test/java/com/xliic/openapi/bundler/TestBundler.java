@@ -0,0 +1,103 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xliic.common.Workspace;
+import com.xliic.common.WorkspaceException;
+
+/**
+ * Bundling helpers shared by the tests.
+ */
+final class TestBundler {
+    private TestBundler() {
+    }
+
+    static BundledJsonNode bundle(String dirname, String filename) throws JsonProcessingException, IOException,
+            URISyntaxException, InterruptedException, BundlingException, WorkspaceException {
+        return bundle(dirname, filename, new Bundler.Options());
+    }
+
+    static BundledJsonNode bundle(String dirname, String filename, Bundler.Options options)
+            throws JsonProcessingException, IOException, URISyntaxException, InterruptedException, BundlingException,
+            WorkspaceException {
+        return bundle(new TestWorkspace(dirname), filename, options);
+    }
+
+    static BundledJsonNode bundle(Workspace workspace, String filename, Bundler.Options options)
+            throws JsonProcessingException, IOException, URISyntaxException, InterruptedException, BundlingException,
+            WorkspaceException {
+        Parser parser = new Parser(workspace);
+        Serializer serializer = new Serializer();
+        Bundler bundler = new Bundler(parser, serializer, options);
+        Document document = parser.parse(workspace.resolve(filename));
+        Mapping mapping = bundler.bundle(document);
+        String json = serializer.serialize(document);
+        ObjectMapper mapper = new ObjectMapper();
+        JsonNode jsonNode = mapper.readTree(json);
+        return new BundledJsonNode(jsonNode, mapping);
+    }
+
+    // bundles with the copying writer, returning Bundler.getBundled() and checking
+    // that the parsed document is left untouched
+    static BundledJsonNode bundleCopy(String dirname, String filename, Bundler.Options options)
+            throws JsonProcessingException, IOException, URISyntaxException, InterruptedException, BundlingException,
+            WorkspaceException {
+        options.setInPlace(false);
+        TestWorkspace workspace = new TestWorkspace(dirname);
+        Parser parser = new Parser(workspace);
+        Serializer serializer = new Serializer();
+        Bundler bundler = new Bundler(parser, serializer, options);
+        Document document = parser.parse(workspace.resolve(filename));
+        Mapping mapping = bundler.bundle(document);
+        assertEquals(parser.readTree(document.root.location), document.root.node);
+        JsonNode jsonNode = new ObjectMapper().readTree(serializer.serialize(bundler.getBundled()));
+        return new BundledJsonNode(jsonNode, mapping);
+    }
+
+    static ReferenceResolutionFailure findFailure(BundlingException ex, String file, String pointer) {
+        for (ReferenceResolutionFailure failure : ex.getFailures()) {
+            if (failure.sourceFile.toString().endsWith(file) && failure.sourcePointer.equals(pointer)) {
+                return failure;
+            }
+        }
+        return null;
+    }
+
+    // copies a directory of test resources to a temporary one which can be modified
+    static Path copy(String dirname) throws IOException {
+        Path source = Paths.get("src/test/resources", dirname);
+        Path dir = Files.createTempDirectory("bundler");
+        List<Path> files = new ArrayList<>();
+        Files.walk(source).forEach(path -> files.add(path));
+        for (Path path : files) {
+            Path target = dir.resolve(source.relativize(path).toString());
+            if (Files.isDirectory(path)) {
+                Files.createDirectories(target);
+            } else {
+                Files.copy(path, target);
+            }
+        }
+        return dir;
+    }
+
+    static void delete(Path dir) throws IOException {
+        Files.walk(dir).sorted(Collections.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import static com.xliic.openapi.bundler.TestBundler.bundle;
+import static com.xliic.openapi.bundler.TestBundler.copy;
+import static com.xliic.openapi.bundler.TestBundler.delete;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xliic.common.FileSystemWorkspace;
+import com.xliic.common.WorkspaceException;
+
+import org.junit.jupiter.api.Test;
+
+public class TreeCacheTest {
+    @Test
+    void testTreeCache() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            BundlingException, WorkspaceException {
+        Path dir = copy("multifile-petstore");
+        Path cacheDir = Files.createTempDirectory("bundler");
+        try {
+            FileSystemWorkspace workspace = new FileSystemWorkspace(dir);
+            BundledJsonNode expected = bundle("multifile-petstore", "openapi.yaml");
+
+            TreeCache[] caches = new TreeCache[3];
+            for (int i = 0; i < caches.length; i++) {
+                if (i == 2) {
+                    Files.write(dir.resolve("schemas/pet.yaml"), "    color:\n      type: string\n".getBytes(),
+                            StandardOpenOption.APPEND);
+                }
+                caches[i] = new TreeCache(cacheDir);
+                Parser.Options options = new Parser.Options();
+                options.setTreeCache(caches[i]);
+                Parser parser = new Parser(workspace, options);
+                Bundler bundler = new Bundler(parser, new Serializer());
+                bundler.bundle(parser.parse(workspace.resolve("openapi.yaml")));
+                String json = new Serializer().serialize(bundler.getBundled());
+                if (i < 2) {
+                    assertEquals(expected.at(""), new ObjectMapper().readTree(json));
+                } else {
+                    assertTrue(json.contains("\"color\""));
+                }
+            }
+
+            // every file is parsed on the first run, and read from the cache on the next
+            assertEquals(0, caches[0].getHits());
+            assertEquals(0, caches[1].getMisses());
+            assertEquals(caches[0].getMisses(), caches[1].getHits());
+            // except for changed files
+            assertEquals(1, caches[2].getMisses());
+        } finally {
+            delete(dir);
+            delete(cacheDir);
+        }
+    }
+}
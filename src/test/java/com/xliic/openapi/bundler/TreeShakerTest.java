@@ -0,0 +1,61 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import static com.xliic.openapi.bundler.TestBundler.bundle;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Collections;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.xliic.common.WorkspaceException;
+
+import org.junit.jupiter.api.Test;
+
+public class TreeShakerTest {
+    @Test
+    void testTreeShaking() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            BundlingException, WorkspaceException {
+        Bundler.Options options = new Bundler.Options();
+        options.setTreeShaking(true);
+        BundledJsonNode shaken = bundle("tree-shaking", "openapi.yaml", options);
+
+        assertTrue(shaken.at("/components/schemas/Unused").isMissingNode());
+        assertTrue(shaken.at("/components/schemas/Orphan").isMissingNode());
+        assertTrue(shaken.at("/components/parameters/offset").isMissingNode());
+        assertFalse(shaken.at("/components/parameters/limit").isMissingNode());
+        assertFalse(shaken.at("/components/schemas/Owner").isMissingNode());
+        // schemas extending a schema with a discriminator are kept, with their own
+        // references
+        assertFalse(shaken.at("/components/schemas/Cat").isMissingNode());
+        assertFalse(shaken.at("/components/schemas/Kennel").isMissingNode());
+        assertFalse(shaken.at("/components/securitySchemes/apiKey").isMissingNode());
+        // external components are kept with their mappings
+        assertEquals("#/components/schemas/components.yaml-components-schemas-Error",
+                shaken.at("/components/responses/components.yaml-components-responses-Error/content/"
+                        + "application~1json/schema/$ref").textValue());
+        assertNotNull(shaken.original("/components/schemas/components.yaml-components-schemas-Error"));
+        assertEquals(Collections.singletonList("/components/schemas/components.yaml-components-schemas-Error"),
+                shaken.bundled("components.yaml", "/components/schemas/Error"));
+        assertTrue(shaken.bundled("components.yaml", "/components/responses/NotFound").isEmpty());
+
+        // the parsed document is left untouched unless shaken in place
+        options.setInPlace(false);
+        TestWorkspace workspace = new TestWorkspace("tree-shaking");
+        Parser parser = new Parser(workspace);
+        Document document = parser.parse(workspace.resolve("openapi.yaml"));
+        Bundler bundler = new Bundler(parser, new Serializer(), options);
+        bundler.bundle(document);
+        assertEquals(parser.readTree(document.root.location), document.root.node);
+        assertEquals(shaken.at(""), new ObjectMapper().readTree(new Serializer().serialize(bundler.getBundled())));
+    }
+}
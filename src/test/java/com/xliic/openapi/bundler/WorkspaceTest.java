@@ -0,0 +1,97 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import static com.xliic.openapi.bundler.TestBundler.bundle;
+import static com.xliic.openapi.bundler.TestBundler.delete;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.xliic.common.FileSystemWorkspace;
+import com.xliic.common.WorkspaceContent;
+import com.xliic.common.WorkspaceException;
+
+import org.junit.jupiter.api.Test;
+
+public class WorkspaceTest {
+    @Test
+    void testByteContent() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            BundlingException, WorkspaceException {
+        BundledJsonNode expected = bundle("multifile-petstore", "openapi.yaml");
+
+        for (int i = 0; i < 3; i++) {
+            final int kind = i;
+            TestWorkspace workspace = new TestWorkspace("multifile-petstore") {
+                @Override
+                public WorkspaceContent read(URI uri) throws IOException, InterruptedException {
+                    WorkspaceContent text = super.read(uri);
+                    byte[] bytes = text.getText().getBytes(StandardCharsets.UTF_8);
+                    if (kind == 0) {
+                        return new WorkspaceContent(bytes, StandardCharsets.UTF_8, text.type);
+                    } else if (kind == 1) {
+                        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+                        direct.put(bytes).flip();
+                        return new WorkspaceContent(direct, null, text.type);
+                    }
+                    return new WorkspaceContent(new ByteArrayInputStream(bytes), null, text.type);
+                }
+            };
+            assertEquals(expected.at(""), bundle(workspace, "openapi.yaml", new Bundler.Options()).at(""));
+        }
+    }
+
+    @Test
+    void testFileSystemWorkspace() throws JsonProcessingException, IOException, URISyntaxException,
+            InterruptedException, BundlingException, WorkspaceException {
+        BundledJsonNode expected = bundle("multifile-petstore", "openapi.yaml");
+
+        // read files into buffers, and memory map all of them
+        long[] thresholds = { Long.MAX_VALUE, 0 };
+        for (long threshold : thresholds) {
+            FileSystemWorkspace workspace = new FileSystemWorkspace(Paths.get("src/test/resources/multifile-petstore"),
+                    threshold);
+            BundledJsonNode bundled = bundle(workspace, "openapi.yaml", new Bundler.Options());
+            assertEquals(expected.at(""), bundled.at(""));
+            assertEquals("schemas/error.yaml", bundled.original("/components/schemas/Error").uri.getPath());
+            assertTrue(workspace.exists(workspace.resolve("schemas/pet.yaml")));
+            assertFalse(workspace.exists(workspace.resolve("schemas/missing.yaml")));
+        }
+
+        // unknown.txt is neither JSON nor YAML
+        BundlingException ex = assertThrows(BundlingException.class, () -> {
+            bundle(new FileSystemWorkspace(Paths.get("src/test/resources/unknown-type")), "external.yaml",
+                    new Bundler.Options());
+        });
+        assertTrue(ex.getFailures().get(0).message.contains("Unknown content type"));
+
+        // files created and deleted are noticed
+        Path dir = Files.createTempDirectory("bundler");
+        try {
+            FileSystemWorkspace workspace = new FileSystemWorkspace(dir);
+            URI file = workspace.resolve("openapi.yaml");
+            assertFalse(workspace.exists(file));
+            Files.write(dir.resolve("openapi.yaml"), "openapi: 3.0.0\n".getBytes());
+            assertTrue(workspace.exists(file));
+            Files.delete(dir.resolve("openapi.yaml"));
+            assertFalse(workspace.exists(file));
+        } finally {
+            delete(dir);
+        }
+    }
+}
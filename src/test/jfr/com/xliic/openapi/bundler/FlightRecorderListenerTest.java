@@ -0,0 +1,67 @@
+/*
+ Copyright (c) 42Crunch Ltd. All rights reserved.
+ Licensed under the GNU Affero General Public License version 3. See LICENSE.txt in the project root for license information.
+*/
+
+package com.xliic.openapi.bundler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.xliic.common.WorkspaceException;
+import com.xliic.openapi.bundler.jfr.FlightRecorderSupport;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.jupiter.api.Test;
+
+// compiled from src/test/jfr on JDK 11 and later only, like the events
+public class FlightRecorderListenerTest {
+    @Test
+    void events() throws JsonProcessingException, IOException, URISyntaxException, InterruptedException,
+            BundlingException, WorkspaceException {
+        assumeTrue(FlightRecorderSupport.isAvailable());
+
+        TestWorkspace workspace = new TestWorkspace("multifile-petstore");
+        BundlerMetrics metrics = new BundlerMetrics();
+        Parser.Options options = new Parser.Options();
+        options.setListener(BundlerListener.all(metrics, FlightRecorderSupport.listener()));
+        Parser parser = new Parser(workspace, options);
+
+        Path dump = Files.createTempFile("bundler", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : new String[] { "Load", "Resolve", "Crawl", "Remap" }) {
+                recording.enable("com.xliic.openapi.bundler." + name);
+            }
+            recording.start();
+            Document document = parser.parse(workspace.resolve("openapi.yaml"));
+            new Bundler(parser, new Serializer()).bundle(document);
+            recording.stop();
+            recording.dump(dump);
+
+            HashMap<String, Integer> counts = new HashMap<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(dump)) {
+                counts.merge(event.getEventType().getName(), 1, Integer::sum);
+                if (event.getEventType().getName().equals("com.xliic.openapi.bundler.Load")) {
+                    assertTrue(event.getLong("size") > 0);
+                }
+            }
+            assertEquals(metrics.getFilesLoaded(), (long) counts.get("com.xliic.openapi.bundler.Load"));
+            assertEquals(metrics.getResolved(), (long) counts.get("com.xliic.openapi.bundler.Resolve"));
+            assertEquals(1, (int) counts.get("com.xliic.openapi.bundler.Crawl"));
+            assertEquals(1, (int) counts.get("com.xliic.openapi.bundler.Remap"));
+        } finally {
+            Files.delete(dump);
+        }
+    }
+}